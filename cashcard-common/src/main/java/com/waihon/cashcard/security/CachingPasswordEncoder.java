@@ -0,0 +1,118 @@
+package com.waihon.cashcard.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// BCrypt is deliberately slow, and HTTP Basic sends the credentials with every request, so
+// without a cache every call to /cashcards pays for a full BCrypt verification.
+// This encoder remembers credentials it has already verified for a short time.
+//
+// Raw passwords are never stored: entries are keyed by an HMAC of the raw password and the
+// stored hash, using a random key that only lives in this process. Because the stored hash is
+// part of the key, changing a user's password makes their old entries unreachable at once.
+// Removed, disabled and locked users need nothing here either: Spring Security rejects them
+// when it loads the user, before it ever asks this encoder about the password.
+//
+// Every authenticated request comes through here, so nothing is shared under a lock: the entries
+// are in a ConcurrentHashMap and each thread has its own Mac. Once there are more than maxSize
+// entries, one thread at a time sweeps out the expired ones and, if that isn't enough, whichever
+// others come first. An evicted entry only costs one more BCrypt verification.
+public class CachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ThreadLocal<Mac> macs;
+    private final Map<String, Long> verifiedUntil = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public CachingPasswordEncoder(PasswordEncoder delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        SecretKeySpec digestKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(digestKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to compute credential digest", e);
+            }
+        });
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        String key = digest(rawPassword, encodedPassword);
+        long now = System.nanoTime();
+        Long expiry = verifiedUntil.get(key);
+        if (expiry != null) {
+            if (expiry - now > 0) {
+                return true;
+            }
+            verifiedUntil.remove(key, expiry);
+        }
+        // Only successful verifications are cached, so a wrong password always pays the full cost.
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        if (matches) {
+            verifiedUntil.put(key, now + ttlNanos);
+            if (verifiedUntil.size() > maxSize) {
+                sweep(now);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            verifiedUntil.values().removeIf(expiry -> expiry - now <= 0);
+            Iterator<String> keys = verifiedUntil.keySet().iterator();
+            while (verifiedUntil.size() > maxSize && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private String digest(CharSequence rawPassword, String encodedPassword) {
+        // doFinal resets the Mac, so it is ready for the thread's next digest.
+        Mac mac = macs.get();
+        mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return HexFormat.of().formatHex(mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.waihon.cashcard.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Keeps 1k to 10k requests in flight against GET /cashcards/99 of an application on port and
+// reports throughput and tail latency at each level, so that the servlet and the reactive stack
+// are measured the same way. Change the load with -Dbenchmark.concurrency=1000,10000 and
+// -Dbenchmark.duration-seconds=20.
+public final class ClosedLoopLoad {
+
+    static final int[] CONCURRENCY = Arrays.stream(System.getProperty("benchmark.concurrency", "1000,2500,5000,10000")
+            .split(",")).mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+    static final Duration DURATION = Duration.ofSeconds(Long.getLong("benchmark.duration-seconds", 10));
+
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+
+    private ClosedLoopLoad() {
+    }
+
+    public static void measure(String label, int port) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/99"))
+                .header("Authorization", AUTHORIZATION)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        for (int concurrency : CONCURRENCY) {
+            run(label, client, request, concurrency);
+        }
+    }
+
+    // A closed loop: as soon as one of the concurrency outstanding requests completes, the next
+    // one is sent.
+    private static void run(String label, HttpClient client, HttpRequest request, int concurrency)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + DURATION.toNanos();
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (failure != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                } else {
+                    latencies.add(System.nanoTime() - sent);
+                }
+                inFlight.release();
+            });
+        }
+        // Let the requests that are still outstanding finish.
+        inFlight.tryAcquire(concurrency, 2, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        assertThat(sorted).isNotEmpty();
+        System.out.printf("%s, %d clients: %.1f requests/s, p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms, %d errors%n",
+                label, concurrency, sorted.length / seconds,
+                percentile(sorted, 50), percentile(sorted, 99), percentile(sorted, 99.9),
+                sorted[sorted.length - 1] / 1e6, errors.get());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
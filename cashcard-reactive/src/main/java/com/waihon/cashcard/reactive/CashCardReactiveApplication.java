@@ -0,0 +1,13 @@
+package com.waihon.cashcard.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class CashCardReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(CashCardReactiveApplication.class, args);
+	}
+
+}
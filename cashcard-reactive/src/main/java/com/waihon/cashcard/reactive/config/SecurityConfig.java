@@ -0,0 +1,74 @@
+package com.waihon.cashcard.reactive.config;
+
+import com.waihon.cashcard.security.CachingPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+import java.time.Duration;
+
+// The same rules as the servlet application's SecurityConfig, expressed as a WebFlux
+// SecurityWebFilterChain.
+@Configuration
+@EnableWebFluxSecurity
+class SecurityConfig {
+
+    @Bean
+    SecurityWebFilterChain filterChain(ServerHttpSecurity http) {
+        // All requests to cashcards/ endpoints must come from a user with the CARD-OWNER role.
+        http.authorizeExchange(exchange -> exchange
+                .pathMatchers("/cashcards/**")
+                .hasRole("CARD-OWNER")
+                .anyExchange()
+                .permitAll());
+        http.httpBasic(Customizer.withDefaults());
+        http.csrf(csrf -> csrf.disable());
+        return http.build();
+    }
+
+    // The reactive authentication manager runs password checks on a separate scheduler, so BCrypt
+    // doesn't block the event loop; the cache keeps it from running on every request as well.
+    @Bean
+    PasswordEncoder passwordEncoder(
+            @Value("${cashcard.security.credential-cache.enabled:true}") boolean cacheEnabled,
+            @Value("${cashcard.security.credential-cache.max-size:10000}") int cacheMaxSize,
+            @Value("${cashcard.security.credential-cache.ttl:5m}") Duration cacheTtl) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        if (!cacheEnabled) {
+            return bcrypt;
+        }
+        return new CachingPasswordEncoder(bcrypt, cacheMaxSize, cacheTtl);
+    }
+
+    // The same users as the servlet application, with the passwords (abc123, qrs456 and xyz789)
+    // stored as BCrypt hashes computed ahead of time rather than encoded on every start.
+    @Bean
+    MapReactiveUserDetailsService testOnlyUsers() {
+        User.UserBuilder user = User.builder();
+        UserDetails sarah = user
+                .username("sarah1")
+                .password("$2a$10$TYVFujq0TO5telJH.gNYIOh4j4g2BIQ482CttLAqwMtpscD/hWHqy")
+                .roles("CARD-OWNER")
+                .build();
+        UserDetails hankOwnsNoCards = user
+                .username("hank-owns-no-cards")
+                .password("$2a$10$kGxymGzBOvBVovCxnH6XUO1jp6EAdjcFOwRKBpPPK2nmyDXbWli4a")
+                .roles("NON-OWNER")
+                .build();
+        UserDetails kumar = user
+                .username("kumar2")
+                .password("$2a$10$hWjzaRkxUJLfrtvQxdkVCujKNY4kLZdjn3qoqOH3.aCRAqZU1tsOe")
+                .roles("CARD-OWNER")
+                .build();
+        return new MapReactiveUserDetailsService(sarah, hankOwnsNoCards, kumar);
+    }
+}
@@ -0,0 +1,6 @@
+package com.waihon.cashcard.reactive.controller;
+
+// The body of POST /cashcards/{id}/adjust: a signed amount to add to the card. With
+// nonNegative set, the adjustment is refused if it would take the amount below zero.
+record CashCardAdjustment(Double delta, boolean nonNegative) {
+}
@@ -0,0 +1,115 @@
+package com.waihon.cashcard.reactive.controller;
+
+import com.waihon.cashcard.reactive.entity.CashCard;
+import com.waihon.cashcard.reactive.repository.CashCardRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+
+// The /cashcards API of the servlet application on WebFlux. Handlers return a Mono or Flux
+// straight away instead of blocking a thread on the database; the response is written once
+// R2DBC has produced the data. Every query is still scoped by the authenticated owner.
+@RestController
+@RequestMapping("/cashcards")
+class CashCardController {
+
+    private final CashCardRepository cashCardRepository;
+
+    private CashCardController(CashCardRepository cashCardRepository) {
+        this.cashCardRepository = cashCardRepository;
+    }
+
+    @GetMapping("/{requestedId}")
+    private Mono<ResponseEntity<CashCard>> findById(@PathVariable Long requestedId, Principal principal) {
+        return cashCardRepository.findByIdAndOwner(requestedId, principal.getName())
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    private Mono<ResponseEntity<Void>> createCashCard(@RequestBody CashCard newCashCardRequest,
+                                                      UriComponentsBuilder ucb,
+                                                      Principal principal) {
+        CashCard cashCardWithOwner = new CashCard(null, newCashCardRequest.amount(), principal.getName());
+        return cashCardRepository.save(cashCardWithOwner)
+                .map(savedCashCard -> {
+                    URI locationOfNewCashCard = ucb
+                            .path("cashcards/{id}")
+                            .buildAndExpand(savedCashCard.id())
+                            .toUri();
+                    return ResponseEntity.created(locationOfNewCashCard).<Void>build();
+                });
+    }
+
+    @GetMapping()
+    private Mono<ResponseEntity<List<CashCard>>> findAll(Pageable pageable, Principal principal) {
+        return cashCardRepository.findByOwner(principal.getName(),
+                        PageRequest.of(
+                                pageable.getPageNumber(),
+                                pageable.getPageSize(),
+                                pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))))
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    // WebFlux writes each card as a line of NDJSON as soon as R2DBC emits it.
+    private Flux<CashCard> exportCashCards(Principal principal) {
+        return cashCardRepository.findByOwnerOrderByAmountAscIdAsc(principal.getName());
+    }
+
+    @PutMapping("/{requestedId}")
+    private Mono<ResponseEntity<Void>> putCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate,
+                                                   Principal principal) {
+        return cashCardRepository.updateAmountByIdAndOwner(requestedId, principal.getName(), cashCardUpdate.amount())
+                .map(updated -> updated > 0
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+
+    @PostMapping("/{requestedId}/adjust")
+    private Mono<ResponseEntity<Void>> adjustCashCard(@PathVariable Long requestedId,
+                                                      @RequestBody CashCardAdjustment adjustment,
+                                                      Principal principal) {
+        if (adjustment.delta() == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String owner = principal.getName();
+        if (!adjustment.nonNegative()) {
+            return cashCardRepository.adjustAmountByIdAndOwner(requestedId, owner, adjustment.delta())
+                    .map(updated -> updated > 0
+                            ? ResponseEntity.noContent().<Void>build()
+                            : ResponseEntity.notFound().<Void>build());
+        }
+        return cashCardRepository.adjustAmountByIdAndOwnerIfNotNegative(requestedId, owner, adjustment.delta())
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        return Mono.just(ResponseEntity.noContent().<Void>build());
+                    }
+                    // Either there's no such card, or the guard refused the adjustment.
+                    return cashCardRepository.existsByIdAndOwner(requestedId, owner)
+                            .map(exists -> exists
+                                    ? ResponseEntity.status(HttpStatus.CONFLICT).<Void>build()
+                                    : ResponseEntity.notFound().<Void>build());
+                });
+    }
+
+    @DeleteMapping("/{id}")
+    private Mono<ResponseEntity<Void>> deleteCashCard(@PathVariable Long id, Principal principal) {
+        return cashCardRepository.deleteByIdAndOwner(id, principal.getName())
+                .map(deleted -> deleted > 0
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
+    }
+}
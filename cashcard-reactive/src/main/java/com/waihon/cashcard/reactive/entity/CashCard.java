@@ -0,0 +1,7 @@
+package com.waihon.cashcard.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+
+// The same cash_card row and JSON shape as the servlet application's CashCard.
+public record CashCard(@Id Long id, Double amount, String owner) {
+}
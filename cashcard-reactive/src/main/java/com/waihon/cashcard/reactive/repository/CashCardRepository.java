@@ -0,0 +1,34 @@
+package com.waihon.cashcard.reactive.repository;
+
+import com.waihon.cashcard.reactive.entity.CashCard;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The non-blocking counterpart of the servlet application's CashCardRepository. Every method
+// returns straight away and emits its result once R2DBC has it.
+public interface CashCardRepository extends ReactiveCrudRepository<CashCard, Long> {
+    Mono<CashCard> findByIdAndOwner(Long id, String owner);
+    Flux<CashCard> findByOwner(String owner, Pageable pageable);
+    Flux<CashCard> findByOwnerOrderByAmountAscIdAsc(String owner);
+    Mono<Boolean> existsByIdAndOwner(Long id, String owner);
+
+    @Modifying
+    @Query("UPDATE cash_card SET amount = :amount WHERE id = :id AND owner = :owner")
+    Mono<Integer> updateAmountByIdAndOwner(Long id, String owner, Double amount);
+
+    @Modifying
+    @Query("DELETE FROM cash_card WHERE id = :id AND owner = :owner")
+    Mono<Integer> deleteByIdAndOwner(Long id, String owner);
+
+    @Modifying
+    @Query("UPDATE cash_card SET amount = amount + :delta WHERE id = :id AND owner = :owner")
+    Mono<Integer> adjustAmountByIdAndOwner(Long id, String owner, Double delta);
+
+    @Modifying
+    @Query("UPDATE cash_card SET amount = amount + :delta WHERE id = :id AND owner = :owner AND amount + :delta >= 0")
+    Mono<Integer> adjustAmountByIdAndOwnerIfNotNegative(Long id, String owner, Double delta);
+}
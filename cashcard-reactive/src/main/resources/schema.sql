@@ -0,0 +1,10 @@
+CREATE TABLE cash_card
+(
+    ID     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    AMOUNT NUMBER NOT NULL DEFAULT 0,
+    OWNER  VARCHAR(256) NOT NULL
+);
+
+-- Every query is scoped by OWNER and the default sort is by AMOUNT, so this index lets an OFFSET
+-- page read an owner's cards in order without a table scan.
+CREATE INDEX cash_card_owner_amount_id ON cash_card (OWNER, AMOUNT, ID);
@@ -0,0 +1,206 @@
+package com.waihon.cashcard.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The ownership and security cases of the servlet application's CashCardApplicationTests,
+// run against the reactive stack.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CashCardReactiveApplicationTests {
+
+	@Autowired
+	WebTestClient webTestClient;
+
+	@Test
+	void shouldReturnACashCardWhenDataIsSaved() {
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.id").isEqualTo(99)
+				.jsonPath("$.amount").isEqualTo(123.45);
+	}
+
+	@Test
+	void shouldNotReturnACashCardWithAnUnknownId() {
+		webTestClient.get().uri("/cashcards/1000")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isNotFound()
+				.expectBody().isEmpty();
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldCreateANewCashCard() {
+		URI location = webTestClient.post().uri("/cashcards")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"amount\": 250.00}")
+				.exchange()
+				.expectStatus().isCreated()
+				.returnResult(Void.class)
+				.getResponseHeaders().getLocation();
+
+		webTestClient.get().uri(location)
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.id").isNotEmpty()
+				.jsonPath("$.amount").isEqualTo(250.00);
+	}
+
+	@Test
+	void shouldReturnASortedPageOfCashCardsWithNoParametersAndUseDefaultValues() {
+		webTestClient.get().uri("/cashcards")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].amount").isEqualTo(1.00)
+				.jsonPath("$[1].amount").isEqualTo(123.45)
+				.jsonPath("$[2].amount").isEqualTo(150.00);
+	}
+
+	@Test
+	void shouldreturnASortedPageOfCashCards() {
+		webTestClient.get().uri("/cashcards?page=0&size=1&sort=amount,desc")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].amount").isEqualTo(150.00);
+	}
+
+	@Test
+	void shouldExportAllCashCardsAsNewlineDelimitedJson() {
+		String body = webTestClient.get().uri("/cashcards/export")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class)
+				.returnResult().getResponseBody();
+		assertThat(body.split("\n")).hasSize(3);
+	}
+
+	@Test
+	void shouldNotReturnACashCardWhenUsingBadCredentials() {
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("BAD-USER", "abc123"))
+				.exchange()
+				.expectStatus().isUnauthorized();
+
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "BAD-PASSWORD"))
+				.exchange()
+				.expectStatus().isUnauthorized();
+	}
+
+	@Test
+	void shouldRejectUsersWhoAreNotCardOwners() {
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("hank-owns-no-cards", "qrs456"))
+				.exchange()
+				.expectStatus().isForbidden();
+	}
+
+	@Test
+	void shouldNotAllowedAccessToCashCardsTheyDoNotOwn() {
+		webTestClient.get().uri("/cashcards/102")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldUpdateAnExistingCashCard() {
+		webTestClient.put().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"amount\": 19.99}")
+				.exchange()
+				.expectStatus().isNoContent();
+
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.amount").isEqualTo(19.99);
+	}
+
+	@Test
+	void shouldNotUpdateACashCardThatIsOwnedBySomeoneElse() {
+		webTestClient.put().uri("/cashcards/102")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"amount\": 333.33}")
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldAdjustTheAmountOfACashCard() {
+		webTestClient.post().uri("/cashcards/99/adjust")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"delta\": 10.00}")
+				.exchange()
+				.expectStatus().isNoContent();
+
+		webTestClient.post().uri("/cashcards/100/adjust")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"delta\": -1.01, \"nonNegative\": true}")
+				.exchange()
+				.expectStatus().isEqualTo(409);
+
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectBody()
+				.jsonPath("$.amount").isEqualTo(133.45);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldDeleteAnExistingCashCard() {
+		webTestClient.delete().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isNoContent();
+
+		webTestClient.get().uri("/cashcards/99")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	void shouldNotAllowDeletionOfCashCardsTheyDoNotOwn() {
+		webTestClient.delete().uri("/cashcards/102")
+				.headers(headers -> headers.setBasicAuth("sarah1", "abc123"))
+				.exchange()
+				.expectStatus().isNotFound();
+
+		webTestClient.get().uri("/cashcards/102")
+				.headers(headers -> headers.setBasicAuth("kumar2", "xyz789"))
+				.exchange()
+				.expectStatus().isOk();
+	}
+}
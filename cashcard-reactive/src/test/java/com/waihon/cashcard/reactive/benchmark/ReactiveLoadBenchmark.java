@@ -0,0 +1,25 @@
+package com.waihon.cashcard.reactive.benchmark;
+
+import com.waihon.cashcard.benchmark.ClosedLoopLoad;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+// The same load as the servlet application's VirtualThreadLoadBenchmark (ClosedLoopLoad: 1k to 10k
+// requests in flight against GET /cashcards/{id}), so the numbers of both stacks can be compared
+// line by line.
+// Run with: ./gradlew benchmark --tests '*LoadBenchmark*'
+// and -Dbenchmark.concurrency=1000,10000 -Dbenchmark.duration-seconds=20 to change the load.
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReactiveLoadBenchmark {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void throughputAndTailLatencyUnderConcurrentClients() throws Exception {
+        ClosedLoopLoad.measure("WebFlux + R2DBC", port);
+    }
+}
@@ -0,0 +1,89 @@
+#!/usr/bin/env bash
+# Measures how long a new CashCard instance takes to become useful, for the plain boot jar, the
+# AOT-processed jar with a CDS archive and the GraalVM native image.
+#
+# For every run it records:
+# - startup: from launching the process until /actuator/health answers 200
+# - first request: the latency of the first authenticated GET /cashcards after that, which
+#   still pays for lazy initialization (BCrypt, Jackson, the first JDBC statements)
+# and prints the median over all runs.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [modes...]
+#   runs   number of starts per mode (default 10)
+#   modes  any of jar, cds, native (default: all of them that have been built)
+# Build first with: ./gradlew -Paot cdsArchive nativeCompile
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-10}
+shift || true
+MODES=("$@")
+if [ ${#MODES[@]} -eq 0 ]; then
+  MODES=(jar cds native)
+fi
+
+PORT=${PORT:-18080}
+JAVA=${JAVA:-java}
+CDS_DIR=build/cds
+JAR=cashcard-0.0.1-SNAPSHOT.jar
+NATIVE=build/native/nativeCompile/cashcard
+
+now_ms() {
+  date +%s%3N
+}
+
+median() {
+  sort -n | awk '{ values[NR] = $1 } END { print (NR % 2) ? values[(NR + 1) / 2] : (values[NR / 2] + values[NR / 2 + 1]) / 2 }'
+}
+
+# Runs in the background subshell, so cd and exec leave the script alone and $! is the application.
+start() {
+  local mode=$1
+  case "$mode" in
+    jar)
+      cd "$CDS_DIR" && exec "$JAVA" -jar "$JAR" --server.port="$PORT" ;;
+    cds)
+      cd "$CDS_DIR" && exec "$JAVA" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+        -jar "$JAR" --server.port="$PORT" ;;
+    native)
+      exec "$NATIVE" --server.port="$PORT" ;;
+  esac
+}
+
+available() {
+  case "$1" in
+    jar) [ -f "$CDS_DIR/$JAR" ] ;;
+    cds) [ -f "$CDS_DIR/$JAR" ] && [ -f "$CDS_DIR/application.jsa" ] ;;
+    native) [ -x "$NATIVE" ] ;;
+    *) echo "Unknown mode $1" >&2; return 1 ;;
+  esac
+}
+
+for mode in "${MODES[@]}"; do
+  if ! available "$mode"; then
+    echo "$mode: not built, skipping (./gradlew -Paot cdsArchive nativeCompile)"
+    continue
+  fi
+  startups=()
+  first_requests=()
+  for ((run = 1; run <= RUNS; run++)); do
+    launched=$(now_ms)
+    start "$mode" > "build/startup-$mode.log" 2>&1 &
+    pid=$!
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/actuator/health")" = "200" ]; do
+      if ! kill -0 "$pid" 2> /dev/null; then
+        echo "$mode: the application exited, see build/startup-$mode.log" >&2
+        exit 1
+      fi
+      sleep 0.005
+    done
+    startups+=($(($(now_ms) - launched)))
+    first_request=$(curl -s -o /dev/null -u sarah1:abc123 -w '%{time_total}' "http://localhost:$PORT/cashcards")
+    first_requests+=("$(awk -v seconds="$first_request" 'BEGIN { printf "%.1f", seconds * 1000 }')")
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+  done
+  printf '%s: startup %s ms, first request %s ms (median of %d runs)\n' "$mode" \
+    "$(printf '%s\n' "${startups[@]}" | median)" "$(printf '%s\n' "${first_requests[@]}" | median)" "$RUNS"
+done
@@ -0,0 +1,51 @@
+package com.waihon.cashcard.jmh;
+
+import com.waihon.cashcard.CashCardApplication;
+import com.waihon.cashcard.repository.CardLedgerWriter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+// Starts the real application (on a random port, with its own in-memory H2 database) and fills
+// cash_card with generated rows for the benchmarks.
+final class BenchmarkApplication {
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(CashCardApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    // Inserts rows cards, the i-th one (counting from 0) belonging to ownerOf.apply(i). Ids are
+    // handed out by the database in insertion order, starting at firstId(context).
+    static void seed(ConfigurableApplicationContext context, int rows, IntFunction<String> ownerOf) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{ThreadLocalRandom.current().nextInt(100_000) / 100.0, ownerOf.apply(i)});
+            if (batch.size() == INSERT_BATCH_SIZE || i == rows - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO cash_card (amount, owner) VALUES (?, ?)", batch);
+                batch.clear();
+            }
+        }
+        // Write the seeded cards' ledger entries now, rather than in the background while the
+        // benchmarks measure.
+        context.getBean(CardLedgerWriter.class).flush();
+    }
+
+    static long firstId(ConfigurableApplicationContext context) {
+        Long firstId = context.getBean(JdbcTemplate.class).queryForObject("SELECT MIN(id) FROM cash_card", Long.class);
+        return firstId == null ? 1 : firstId;
+    }
+}
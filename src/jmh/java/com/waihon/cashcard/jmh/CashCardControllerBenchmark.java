@@ -0,0 +1,88 @@
+package com.waihon.cashcard.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+// The full request path through MockMvc: the Spring Security filter chain with HTTP Basic
+// authentication, the controller, the repository and JSON serialization. Only the socket is
+// left out. Each benchmark returns the HTTP status so the work can't be optimized away.
+@State(Scope.Benchmark)
+public class CashCardControllerBenchmark {
+
+    static final int CARDS = 100;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private long firstId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, CARDS, card -> "sarah1");
+        firstId = BenchmarkApplication.firstId(context);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(CARDS);
+    }
+
+    @Benchmark
+    public int getCashCard() throws Exception {
+        return mockMvc.perform(get("/cashcards/{id}", randomId()).with(httpBasic("sarah1", "abc123")))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int listCashCards() throws Exception {
+        return mockMvc.perform(get("/cashcards").with(httpBasic("sarah1", "abc123")))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int createCashCard() throws Exception {
+        return mockMvc.perform(post("/cashcards")
+                        .with(httpBasic("sarah1", "abc123"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 250.00}"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int putCashCard() throws Exception {
+        return mockMvc.perform(put("/cashcards/{id}", randomId())
+                        .with(httpBasic("sarah1", "abc123"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 19.99}"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int getUnauthenticated() throws Exception {
+        return mockMvc.perform(get("/cashcards/{id}", randomId()))
+                .andReturn().getResponse().getStatus();
+    }
+}
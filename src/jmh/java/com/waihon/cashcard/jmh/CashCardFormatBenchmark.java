@@ -0,0 +1,87 @@
+package com.waihon.cashcard.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.waihon.cashcard.entity.CashCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+
+// JSON against CBOR and Smile: encode/decode throughput of a single CashCard, of a default-sized
+// (20 card) list page and of a large (1000 card) page such as internal services pull. The
+// payload sizes are printed once per format when the benchmark starts.
+// Run with: ./gradlew jmh -PjmhIncludes=CashCardFormatBenchmark
+@State(Scope.Benchmark)
+public class CashCardFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    private ObjectWriter singleWriter;
+    private ObjectReader singleReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+
+    private CashCard cashCard;
+    private CashCard[] page;
+    private byte[] cashCardBytes;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        // The same builder setup as the converters in BinaryFormatsConfig, minus Spring Boot's
+        // customizers.
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        ObjectMapper objectMapper = switch (format) {
+            case "json" -> builder.build();
+            case "cbor" -> builder.factory(new CBORFactory()).build();
+            case "smile" -> builder.factory(new SmileFactory()).build();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        singleWriter = objectMapper.writerFor(CashCard.class);
+        singleReader = objectMapper.readerFor(CashCard.class);
+        listWriter = objectMapper.writerFor(CashCard[].class);
+        listReader = objectMapper.readerFor(CashCard[].class);
+
+        cashCard = new CashCard(99L, 123.45, "sarah1");
+        page = new CashCard[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            page[i] = new CashCard(100L + i, i * 10.25, "sarah1");
+        }
+        cashCardBytes = singleWriter.writeValueAsBytes(cashCard);
+        pageBytes = listWriter.writeValueAsBytes(page);
+        System.out.printf("%n%s: single card %d bytes, page of %d cards %d bytes%n",
+                format, cashCardBytes.length, pageSize, pageBytes.length);
+    }
+
+    @Benchmark
+    public byte[] writeSingle() throws IOException {
+        return singleWriter.writeValueAsBytes(cashCard);
+    }
+
+    @Benchmark
+    public CashCard readSingle() throws IOException {
+        return singleReader.readValue(cashCardBytes);
+    }
+
+    @Benchmark
+    public byte[] writeList() throws IOException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public CashCard[] readList() throws IOException {
+        return listReader.readValue(pageBytes);
+    }
+}
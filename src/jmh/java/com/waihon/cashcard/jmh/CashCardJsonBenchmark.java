@@ -0,0 +1,68 @@
+package com.waihon.cashcard.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.waihon.cashcard.entity.CashCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+
+// Jackson read/write of a single CashCard and of a default-sized (20 card) list page, using an
+// ObjectMapper configured the way Spring Boot configures the one behind the controllers.
+@State(Scope.Benchmark)
+public class CashCardJsonBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectWriter singleWriter;
+    private ObjectReader singleReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+
+    private CashCard cashCard;
+    private CashCard[] page;
+    private byte[] cashCardJson;
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        singleWriter = objectMapper.writerFor(CashCard.class);
+        singleReader = objectMapper.readerFor(CashCard.class);
+        listWriter = objectMapper.writerFor(CashCard[].class);
+        listReader = objectMapper.readerFor(CashCard[].class);
+
+        cashCard = new CashCard(99L, 123.45, "sarah1");
+        page = new CashCard[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page[i] = new CashCard(100L + i, i * 10.25, "sarah1");
+        }
+        cashCardJson = singleWriter.writeValueAsBytes(cashCard);
+        pageJson = listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeSingle() throws IOException {
+        return singleWriter.writeValueAsBytes(cashCard);
+    }
+
+    @Benchmark
+    public CashCard readSingle() throws IOException {
+        return singleReader.readValue(cashCardJson);
+    }
+
+    @Benchmark
+    public byte[] writeList() throws IOException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public CashCard[] readList() throws IOException {
+        return listReader.readValue(pageJson);
+    }
+}
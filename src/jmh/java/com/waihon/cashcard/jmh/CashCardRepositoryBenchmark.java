@@ -0,0 +1,132 @@
+package com.waihon.cashcard.jmh;
+
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.repository.CashCardRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// CashCardRepository lookups against H2 holding 10^3 to 10^6 cards, spread over owners with
+// CARDS_PER_OWNER cards each, plus one owner with BIG_OWNER_CARDS cards. Amounts are spread evenly
+// over 0 to 1000, so the amount range of the filtered lookups holds about a tenth of an owner's
+// cards. The big owner is where a keyset page that doesn't seek would show: a page near the end
+// of their cards would then read all of the cards before it.
+//
+// Before measuring, setUp() checks with EXPLAIN that the keyset queries seek on the amount in the
+// (owner, amount, id) index, not only on the owner, and fails the run if they don't.
+@State(Scope.Benchmark)
+public class CashCardRepositoryBenchmark {
+
+    static final int CARDS_PER_OWNER = 100;
+    static final int BIG_OWNER_CARDS = 10_000;
+    static final String BIG_OWNER = "big-owner";
+    static final int PAGE_SIZE = 20;
+    static final double MIN_AMOUNT = 100.00;
+    static final double MAX_AMOUNT = 200.00;
+    static final double DEEP_AMOUNT = 900.00;
+    static final Pattern INDEX_CONDITION = Pattern.compile("/\\* PUBLIC\\.CASH_CARD_OWNER_AMOUNT_ID: (.*?) \\*/");
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository cashCardRepository;
+    private long firstId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, rows, CashCardRepositoryBenchmark::ownerOf);
+        BenchmarkApplication.seed(context, BIG_OWNER_CARDS, card -> BIG_OWNER);
+        cashCardRepository = context.getBean(CashCardRepository.class);
+        firstId = BenchmarkApplication.firstId(context);
+        requireAmountSeek(CashCardRepository.KEYSET_PAGE_AFTER,
+                Map.of("owner", BIG_OWNER, "amount", DEEP_AMOUNT, "id", 0L, "limit", PAGE_SIZE));
+        requireAmountSeek(CashCardRepository.KEYSET_PAGE_AFTER_UP_TO,
+                Map.of("owner", BIG_OWNER, "amount", MIN_AMOUNT, "id", 0L, "maxAmount", MAX_AMOUNT, "limit", PAGE_SIZE));
+    }
+
+    // The index name shows up in the plan as soon as the owner is looked up in the index, so what
+    // matters is whether the index condition also bounds the amount.
+    private void requireAmountSeek(String query, Map<String, Object> parameters) {
+        String plan = context.getBean(NamedParameterJdbcTemplate.class)
+                .queryForObject("EXPLAIN " + query, parameters, String.class);
+        Matcher indexCondition = INDEX_CONDITION.matcher(plan == null ? "" : plan.replace("\"", "").toUpperCase());
+        if (!indexCondition.find() || !indexCondition.group(1).contains("AMOUNT")) {
+            throw new IllegalStateException("The keyset query doesn't seek on the amount:\n" + plan);
+        }
+        System.out.printf("%nPlan at %d rows:%n%s%n", rows, plan);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    static String ownerOf(int card) {
+        return "owner-" + card / CARDS_PER_OWNER;
+    }
+
+    private int randomCard() {
+        return ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    @Benchmark
+    public CashCard findByIdAndOwner() {
+        int card = randomCard();
+        return cashCardRepository.findByIdAndOwner(firstId + card, ownerOf(card));
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerFirstPage() {
+        return cashCardRepository.findByOwner(ownerOf(randomCard()),
+                PageRequest.of(0, PAGE_SIZE, Sort.by(Sort.Direction.ASC, "amount")));
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerLastPage() {
+        return cashCardRepository.findByOwner(ownerOf(randomCard()),
+                PageRequest.of(CARDS_PER_OWNER / PAGE_SIZE - 1, PAGE_SIZE, Sort.by(Sort.Direction.ASC, "amount")));
+    }
+
+    @Benchmark
+    public List<CashCard> findKeysetPageByOwner() {
+        return cashCardRepository.findKeysetPageByOwner(ownerOf(randomCard()), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwnerAndAmountBetweenFirstPage() {
+        return cashCardRepository.findByOwnerAndAmountBetween(ownerOf(randomCard()), MIN_AMOUNT, MAX_AMOUNT,
+                PageRequest.of(0, PAGE_SIZE, Sort.by(Sort.Direction.ASC, "amount")));
+    }
+
+    @Benchmark
+    public List<CashCard> findKeysetPageByOwnerInAmountRange() {
+        return cashCardRepository.findKeysetPageByOwnerAfterUpTo(ownerOf(randomCard()), MIN_AMOUNT, 0L, MAX_AMOUNT,
+                PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CashCard> findDeepKeysetPageOfBigOwner() {
+        return cashCardRepository.findKeysetPageByOwnerAfter(BIG_OWNER, DEEP_AMOUNT, 0L, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CashCard> findKeysetPageOfBigOwnerInAmountRange() {
+        return cashCardRepository.findKeysetPageByOwnerAfterUpTo(BIG_OWNER, MIN_AMOUNT, 0L, MAX_AMOUNT, PAGE_SIZE);
+    }
+}
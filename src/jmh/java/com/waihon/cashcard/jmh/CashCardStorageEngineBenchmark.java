@@ -0,0 +1,90 @@
+package com.waihon.cashcard.jmh;
+
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.repository.CashCardRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The same CashCardRepository calls against the two storage engines: H2 through Spring Data JDBC,
+// and the memory-mapped log (cashcard.storage.engine=log). Both are seeded with the same number
+// of cards through saveAll(), spread over owners like CashCardRepositoryBenchmark.
+// Run with: ./gradlew jmh -PjmhIncludes=CashCardStorageEngineBenchmark
+@State(Scope.Benchmark)
+public class CashCardStorageEngineBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"jdbc", "log"})
+    public String engine;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private CashCardRepository cashCardRepository;
+    private long firstId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("cashcard.storage.engine=" + engine,
+                // The timed writes would otherwise bring compaction into the measurements at random.
+                "cashcard.storage.log.compaction-min-size=2GB");
+        cashCardRepository = context.getBean(CashCardRepository.class);
+        firstId = -1;
+        List<CashCard> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new CashCard(null, ThreadLocalRandom.current().nextInt(100_000) / 100.0,
+                    CashCardRepositoryBenchmark.ownerOf(i)));
+            if (batch.size() == SEED_BATCH_SIZE || i == rows - 1) {
+                for (CashCard saved : cashCardRepository.saveAll(batch)) {
+                    if (firstId < 0) {
+                        firstId = saved.id();
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private int randomCard() {
+        return ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    @Benchmark
+    public CashCard findByIdAndOwner() {
+        int card = randomCard();
+        return cashCardRepository.findByIdAndOwner(firstId + card, CashCardRepositoryBenchmark.ownerOf(card));
+    }
+
+    @Benchmark
+    public List<CashCard> findKeysetPageByOwner() {
+        return cashCardRepository.findKeysetPageByOwner(CashCardRepositoryBenchmark.ownerOf(randomCard()),
+                CashCardRepositoryBenchmark.PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CashCard create() {
+        return cashCardRepository.save(new CashCard(null, 10.00, CashCardRepositoryBenchmark.ownerOf(randomCard())));
+    }
+
+    @Benchmark
+    public int adjustAmount() {
+        int card = randomCard();
+        return cashCardRepository.adjustAmountByIdAndOwner(firstId + card, CashCardRepositoryBenchmark.ownerOf(card),
+                0.01);
+    }
+}
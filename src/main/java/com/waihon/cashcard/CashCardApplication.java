@@ -2,8 +2,10 @@ package com.waihon.cashcard;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(CashCardRuntimeHints.class)
 public class CashCardApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,54 @@
+package com.waihon.cashcard;
+
+import com.waihon.cashcard.entity.CardLedgerEntry;
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.entity.CashCardSummary;
+import com.waihon.cashcard.events.CashCardEvent;
+import com.waihon.cashcard.repository.CardLedgerRepository;
+import com.waihon.cashcard.repository.CardLedgerTrigger;
+import com.waihon.cashcard.repository.CashCardRepository;
+import com.waihon.cashcard.repository.CashCardSummaryTrigger;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.BindingReflectionHintsRegistrar;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.interceptor.TransactionalProxy;
+
+// What a GraalVM native image of the application needs that Spring's AOT processing can't work out
+// from the bean definitions alone. Most of it overlaps with what Spring MVC and Spring Data
+// contribute themselves; listing it here keeps the native build from depending on that.
+class CashCardRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Jackson (JSON, CBOR, Smile) binds these records through their canonical constructors and
+        // accessors, and Spring Data JDBC instantiates CashCard from rows. CashCardEvent only goes
+        // through an SseEmitter, which AOT can't see from the handler's signature.
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                CashCard.class, CashCardSummary.class, CashCardEvent.class, CardLedgerEntry.class);
+
+        // H2 loads the triggers named in schema.sql by class name.
+        hints.reflection().registerType(CashCardSummaryTrigger.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        hints.reflection().registerType(CardLedgerTrigger.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        // The JDK proxies Spring Data puts in front of the repositories (interfaces in the order
+        // ProxyFactory adds them), and the package-private fragment implementations it creates by
+        // reflection.
+        for (Class<?> repository : new Class<?>[] {CashCardRepository.class, CardLedgerRepository.class}) {
+            hints.proxies().registerJdkProxy(repository, Repository.class, TransactionalProxy.class,
+                    SpringProxy.class, Advised.class, DecoratingProxy.class);
+        }
+        for (String fragment : new String[] {
+                "com.waihon.cashcard.repository.CashCardStreamingRepositoryImpl",
+                "com.waihon.cashcard.repository.CashCardSummaryRepositoryImpl",
+                "com.waihon.cashcard.repository.CardLedgerOutboxRepositoryImpl"}) {
+            hints.reflection().registerType(TypeReference.of(fragment),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+    }
+}
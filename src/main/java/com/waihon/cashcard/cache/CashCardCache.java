@@ -0,0 +1,147 @@
+package com.waihon.cashcard.cache;
+
+import com.waihon.cashcard.entity.CashCard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// An in-process, read-through cache of cards keyed by (id, owner), so that cards which are read
+// over and over don't cost a database round trip each time.
+//
+// Lookups that found nothing are cached too, but only for a short negativeTtl, so that clients
+// probing for unknown ids can't keep hammering the database either.
+//
+// Writers must call put() (or invalidate()) after creating a card, and invalidate() after
+// changing or deleting one; concurrent updates of one card may finish in either order, so updates
+// don't put their value. To make sure a read that started before such a write can't put the old
+// value back afterwards, every segment keeps a generation number that each write bumps, and a
+// loaded value is only stored if the generation is unchanged.
+@Component
+public class CashCardCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CashCardCache(@Value("${cashcard.cache.max-size:10000}") int maxSize,
+                         @Value("${cashcard.cache.ttl:30s}") Duration ttl,
+                         @Value("${cashcard.cache.negative-ttl:2s}") Duration negativeTtl) {
+        int maxSegmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxSegmentSize);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+    // Returns the cached card, or calls the loader and caches what it returns (including null).
+    public CashCard get(Long id, String owner, Supplier<CashCard> loader) {
+        Key key = new Key(id, owner);
+        Segment segment = segmentFor(key);
+        long generation;
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.cashCard;
+            }
+            if (entry != null) {
+                segment.entries.remove(key);
+                evictions.increment();
+            }
+            generation = segment.generation;
+        }
+        misses.increment();
+        CashCard cashCard = loader.get();
+        long ttl = cashCard != null ? ttlNanos : negativeTtlNanos;
+        synchronized (segment) {
+            if (segment.generation == generation) {
+                segment.entries.put(key, new Entry(cashCard, System.nanoTime() + ttl));
+            }
+        }
+        return cashCard;
+    }
+
+    // Records a card that has just been created, replacing any cached "not found" for its id.
+    public void put(CashCard cashCard) {
+        Key key = new Key(cashCard.id(), cashCard.owner());
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.entries.put(key, new Entry(cashCard, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    // Forgets a card that has just been updated or deleted.
+    public void invalidate(Long id, String owner) {
+        Key key = new Key(id, owner);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public Stats stats() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment segmentFor(Key key) {
+        return segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+    }
+
+    public record Stats(long hits, long misses, long evictions, long size) {
+    }
+
+    private record Key(Long id, String owner) {
+    }
+
+    private record Entry(CashCard cashCard, long expiresAt) {
+    }
+
+    // Each segment is a small LRU map guarded by its own lock, so that concurrent requests for
+    // different cards rarely wait for each other.
+    private final class Segment {
+        private long generation;
+        private final Map<Key, Entry> entries;
+
+        Segment(int maxSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
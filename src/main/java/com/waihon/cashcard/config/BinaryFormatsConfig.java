@@ -0,0 +1,35 @@
+package com.waihon.cashcard.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+// CBOR (application/cbor) and Smile (application/x-jackson-smile) bodies for every /cashcards
+// endpoint that takes or returns CashCards, for high-volume clients that would otherwise spend
+// their CPU formatting and parsing JSON text.
+//
+// Spring Boot puts these beans where Spring MVC's own CBOR and Smile converters would go, after
+// the JSON converter. JSON therefore stays the default, and a client only gets a binary format by
+// asking for it in Accept or sending it as Content-Type.
+@Configuration
+class BinaryFormatsConfig {
+
+    // Boot's builder is a prototype, so each mapper gets the same modules and spring.jackson.*
+    // settings as the JSON ObjectMapper, with its own binary factory.
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                     MeterRegistry meterRegistry) {
+        return new TimedCborHttpMessageConverter(builder.factory(new CBORFactory()).build(), meterRegistry);
+    }
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                       MeterRegistry meterRegistry) {
+        return new TimedSmileHttpMessageConverter(builder.factory(new SmileFactory()).build(), meterRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+package com.waihon.cashcard.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.waihon.cashcard.cache.CashCardCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+// Metrics that Spring Boot doesn't publish by itself. Request, authentication, repository and
+// connection pool metrics come from Actuator; see application.properties.
+@Configuration
+class MetricsConfig {
+
+    // Spring Boot backs off from its own JSON converter when it finds this bean, and puts ours in
+    // the same place in the converter list, so JSON stays the default.
+    @Bean
+    MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                            MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+
+    @Bean
+    MeterBinder cashCardCacheMetrics(CashCardCache cashCardCache) {
+        return registry -> {
+            FunctionCounter.builder("cashcard.cache.hits", cashCardCache, cache -> cache.stats().hits())
+                    .register(registry);
+            FunctionCounter.builder("cashcard.cache.misses", cashCardCache, cache -> cache.stats().misses())
+                    .register(registry);
+            FunctionCounter.builder("cashcard.cache.evictions", cashCardCache, cache -> cache.stats().evictions())
+                    .register(registry);
+            Gauge.builder("cashcard.cache.size", cashCardCache, cache -> cache.stats().size())
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.waihon.cashcard.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Admission control in the security filter chain, right after HTTP Basic authentication: each
+// user's requests are limited by OwnerRateLimiter before they get a chance to hold a request
+// thread or a database connection for long. Requests over the limit get 429 Too Many Requests
+// with a Retry-After in seconds.
+//
+// Unauthenticated requests pass through; they are turned away by authorization further down.
+class OwnerRateLimitFilter extends OncePerRequestFilter {
+
+    private final OwnerRateLimiter rateLimiter;
+
+    OwnerRateLimitFilter(OwnerRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        List<String> roles = new ArrayList<>();
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        String role = rateLimiter.limitedRole(roles);
+        if (role == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        OwnerRateLimiter.Admission admission = rateLimiter.acquire(authentication.getName(), role);
+        if (!admission.admitted()) {
+            long retryAfterSeconds = Math.max(1, (admission.waitNanos() + 999_999_999) / 1_000_000_000);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            return;
+        }
+        try {
+            rateLimiter.await(admission);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
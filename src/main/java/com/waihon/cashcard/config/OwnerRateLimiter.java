@@ -0,0 +1,142 @@
+package com.waihon.cashcard.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// A token bucket per authenticated user: up to burst requests at once, refilled at perSecond.
+//
+// Each bucket is a single AtomicLong holding the time at which it will be full again (the
+// "theoretical arrival time" of the generic cell rate algorithm, which behaves exactly like a
+// token bucket). Taking a token is one compare-and-set on the user's own counter, so users never
+// contend with each other and no lock is taken on the way in.
+//
+// A request that finds the bucket empty, but would get a token within maxWait, reserves that token
+// and waits for it rather than being turned away; anything later is rejected with the time after
+// which it would be admitted.
+class OwnerRateLimiter {
+
+    // Buckets beyond this many are swept, dropping the full ones: a full bucket is the same as none.
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    // Checked when cashcard.rate-limit.roles is bound, so that a bad rate stops the application
+    // from starting instead of turning into an infinite or overflowing emission interval.
+    record Rate(int burst, double perSecond) {
+        Rate {
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be at least 1, not " + burst);
+            }
+            if (!(perSecond > 0) || burst / perSecond * 1e9 >= Long.MAX_VALUE) {
+                throw new IllegalArgumentException("per-second must be positive, and refill a burst of "
+                        + burst + " within about 292 years, not " + perSecond);
+            }
+        }
+    }
+
+    // The outcome of acquire(): wait this long and go ahead, or (if rejected) retry after this long.
+    record Admission(boolean admitted, long waitNanos) {
+    }
+
+    private final Map<String, Rate> ratesByRole = new HashMap<>();
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> rejected = new HashMap<>();
+    private final Map<String, Counter> queued = new HashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    OwnerRateLimiter(Map<String, Rate> ratesByRole, long maxWaitNanos, MeterRegistry meterRegistry) {
+        this(ratesByRole, maxWaitNanos, meterRegistry, System::nanoTime);
+    }
+
+    OwnerRateLimiter(Map<String, Rate> ratesByRole, long maxWaitNanos, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.maxWaitNanos = maxWaitNanos;
+        this.clock = clock;
+        ratesByRole.forEach((role, rate) -> {
+            String normalized = role.toUpperCase(Locale.ROOT);
+            this.ratesByRole.put(normalized, rate);
+            rejected.put(normalized, Counter.builder("cashcard.rate-limit.rejected")
+                    .description("Requests turned away with 429 because the user's bucket was empty")
+                    .tag("role", normalized)
+                    .register(meterRegistry));
+            queued.put(normalized, Counter.builder("cashcard.rate-limit.queued")
+                    .description("Requests that waited for a token instead of being turned away")
+                    .tag("role", normalized)
+                    .register(meterRegistry));
+        });
+        Gauge.builder("cashcard.rate-limit.waiting", waiting, AtomicInteger::get)
+                .description("Requests waiting for a token right now")
+                .register(meterRegistry);
+    }
+
+    // The first of roles (Spring Security authorities such as ROLE_CARD-OWNER) that has a rate,
+    // or null if none has, in which case the user isn't limited.
+    String limitedRole(Iterable<String> roles) {
+        for (String role : roles) {
+            String name = role.startsWith("ROLE_") ? role.substring(5) : role;
+            name = name.toUpperCase(Locale.ROOT);
+            if (ratesByRole.containsKey(name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    Admission acquire(String user, String role) {
+        Rate rate = ratesByRole.get(role);
+        long interval = (long) (1_000_000_000L / rate.perSecond());
+        long burstWindow = interval * rate.burst();
+        AtomicLong bucket = bucket(user);
+        while (true) {
+            long now = clock.getAsLong();
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + interval;
+            long wait = next - now - burstWindow;
+            if (wait > maxWaitNanos) {
+                rejected.get(role).increment();
+                return new Admission(false, wait);
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                if (wait > 0) {
+                    queued.get(role).increment();
+                    return new Admission(true, wait);
+                }
+                return new Admission(true, 0);
+            }
+        }
+    }
+
+    // Blocks the calling thread for an admitted request's wait, counting it as waiting meanwhile.
+    void await(Admission admission) throws InterruptedException {
+        if (admission.waitNanos() <= 0) {
+            return;
+        }
+        waiting.incrementAndGet();
+        try {
+            Thread.sleep(admission.waitNanos() / 1_000_000, (int) (admission.waitNanos() % 1_000_000));
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private AtomicLong bucket(String user) {
+        AtomicLong bucket = buckets.get(user);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= SWEEP_THRESHOLD) {
+            long now = clock.getAsLong();
+            buckets.values().removeIf(fullAt -> fullAt.get() <= now);
+        }
+        return buckets.computeIfAbsent(user, key -> new AtomicLong(Long.MIN_VALUE));
+    }
+}
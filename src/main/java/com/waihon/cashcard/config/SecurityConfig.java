@@ -1,7 +1,15 @@
 package com.waihon.cashcard.config;
 
+import com.waihon.cashcard.security.CachingPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
@@ -11,6 +19,10 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import java.time.Duration;
+import java.util.Map;
 
 // Tells Spring to use this class to configure Spring and Spring Boot itself.
 @Configuration
@@ -19,43 +31,75 @@ class SecurityConfig {
     // Spring Security expects a Bean to configure its Filter Chain. Annotating a method
     // return a SecurityFilterChain with the @Bean satisfies this expectation.
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, ObjectProvider<OwnerRateLimiter> rateLimiter) throws Exception {
         // All HTTP requests to cashcards/ endpoints are required to be authenticated.
         http.authorizeHttpRequests(request -> request
                 .requestMatchers("/cashcards/**")
                 // Enable Role-Based Access Control (RBAC) to restrict access to only users with the
                 // CARD-OWNER role.
-                .hasRole("CARD-OWNER"));
+                .hasRole("CARD-OWNER")
+                // Health checks and the Prometheus scraper don't log in.
+                .requestMatchers("/actuator/health", "/actuator/prometheus")
+                .permitAll());
         // Enable HTTP Basic Authentication security (username and password) with default settings.
         http.httpBasic(Customizer.withDefaults());
         // Do not require CSRF security
         http.csrf(csrf -> csrf.disable());
+        // Limit each user's request rate as soon as we know who they are.
+        rateLimiter.ifAvailable(limiter ->
+                http.addFilterAfter(new OwnerRateLimitFilter(limiter), BasicAuthenticationFilter.class));
         return http.build();
     }
 
+    // Token buckets per user, sized by role with cashcard.rate-limit.roles.<role>.burst and
+    // .per-second. Users whose roles have no rate aren't limited.
+    @Bean
+    @ConditionalOnProperty(name = "cashcard.rate-limit.enabled", havingValue = "true")
+    OwnerRateLimiter ownerRateLimiter(Environment environment,
+                                      @Value("${cashcard.rate-limit.max-queue-wait:50ms}") Duration maxQueueWait,
+                                      MeterRegistry meterRegistry) {
+        Map<String, OwnerRateLimiter.Rate> rates = Binder.get(environment)
+                .bind("cashcard.rate-limit.roles", Bindable.mapOf(String.class, OwnerRateLimiter.Rate.class))
+                .orElse(Map.of());
+        return new OwnerRateLimiter(rates, maxQueueWait.toNanos(), meterRegistry);
+    }
+
+    // Every request carries Basic credentials, so verified credentials are cached for a short
+    // time instead of running BCrypt on each call. Set
+    // cashcard.security.credential-cache.enabled=false to verify every request again.
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    PasswordEncoder passwordEncoder(
+            @Value("${cashcard.security.credential-cache.enabled:true}") boolean cacheEnabled,
+            @Value("${cashcard.security.credential-cache.max-size:10000}") int cacheMaxSize,
+            @Value("${cashcard.security.credential-cache.ttl:5m}") Duration cacheTtl) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        if (!cacheEnabled) {
+            return bcrypt;
+        }
+        return new CachingPasswordEncoder(bcrypt, cacheMaxSize, cacheTtl);
     }
 
     // Spring's IoC container will find the UserDetailsService bean and Spring Data
     // will use it when needed.
+    // The passwords (abc123, qrs456 and xyz789) are stored as BCrypt hashes computed ahead of time.
+    // Calling passwordEncoder.encode() here would run BCrypt once per user on every start, before
+    // the application can take any traffic.
     @Bean
-    UserDetailsService testOnlyUsers(PasswordEncoder passwordEncoder) {
+    UserDetailsService testOnlyUsers() {
         User.UserBuilder user = User.builder();
         UserDetails sarah = user
                 .username("sarah1")
-                .password(passwordEncoder.encode("abc123"))
+                .password("$2a$10$TYVFujq0TO5telJH.gNYIOh4j4g2BIQ482CttLAqwMtpscD/hWHqy")
                 .roles("CARD-OWNER") // new role
                 .build();
         UserDetails hankOwnsNoCards = user
                 .username("hank-owns-no-cards")
-                .password(passwordEncoder.encode("qrs456"))
+                .password("$2a$10$kGxymGzBOvBVovCxnH6XUO1jp6EAdjcFOwRKBpPPK2nmyDXbWli4a")
                 .roles("NON-OWNER") // new role
                 .build();
         UserDetails kumar = user
                 .username("kumar2")
-                .password(passwordEncoder.encode("xyz789"))
+                .password("$2a$10$hWjzaRkxUJLfrtvQxdkVCujKNY4kLZdjn3qoqOH3.aCRAqZU1tsOe")
                 .roles("CARD-OWNER") // new role
                 .build();
         return new InMemoryUserDetailsManager(sarah, hankOwnsNoCards, kumar);
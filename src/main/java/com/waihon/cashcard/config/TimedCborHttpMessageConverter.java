@@ -0,0 +1,38 @@
+package com.waihon.cashcard.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+// Like TimedJacksonHttpMessageConverter, for application/cbor bodies.
+class TimedCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    private final SerializationTimers timers;
+
+    TimedCborHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new SerializationTimers(meterRegistry, "cbor");
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return timers.read(type, () -> super.read(type, contextClass, inputMessage));
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.write(object, type, () -> {
+            super.writeInternal(object, type, outputMessage);
+            return null;
+        });
+    }
+}
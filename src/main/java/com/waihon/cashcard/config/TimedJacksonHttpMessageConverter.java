@@ -0,0 +1,41 @@
+package com.waihon.cashcard.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+// The JSON converter Spring MVC uses for @RequestBody and response bodies, with every read and
+// write recorded in the cashcard.serialization timer. Together with the request, authentication
+// and repository timers this shows how much of a request is spent on JSON.
+// TimedCborHttpMessageConverter and TimedSmileHttpMessageConverter do the same for binary bodies.
+class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final SerializationTimers timers;
+
+    TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new SerializationTimers(meterRegistry, "json");
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return timers.read(type, () -> super.read(type, contextClass, inputMessage));
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.write(object, type, () -> {
+            super.writeInternal(object, type, outputMessage);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package com.waihon.cashcard.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+// Like TimedJacksonHttpMessageConverter, for application/x-jackson-smile bodies.
+class TimedSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+    private final SerializationTimers timers;
+
+    TimedSmileHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new SerializationTimers(meterRegistry, "smile");
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return timers.read(type, () -> super.read(type, contextClass, inputMessage));
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.write(object, type, () -> {
+            super.writeInternal(object, type, outputMessage);
+            return null;
+        });
+    }
+}
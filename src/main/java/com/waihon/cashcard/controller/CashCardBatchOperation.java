@@ -0,0 +1,25 @@
+package com.waihon.cashcard.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One item of a POST /cashcards/batch request. Creates only need an amount, updates need an
+// id and an amount, and deletes only need an id.
+record CashCardBatchOperation(Type op, Long id, Double amount) {
+
+    enum Type {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+
+    boolean isValid() {
+        if (op == null) {
+            return false;
+        }
+        return switch (op) {
+            case CREATE -> amount != null;
+            case UPDATE -> id != null && amount != null;
+            case DELETE -> id != null;
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package com.waihon.cashcard.controller;
+
+// The outcome of one batch item, reported with the HTTP status the single-item endpoint
+// would have returned for it (201, 204, 400 or 404).
+record CashCardBatchResult(int index, CashCardBatchOperation.Type op, Long id, int status) {
+}
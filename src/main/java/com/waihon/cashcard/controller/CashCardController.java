@@ -1,19 +1,52 @@
 package com.waihon.cashcard.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.waihon.cashcard.cache.CashCardCache;
+import com.waihon.cashcard.entity.CardLedgerEntry;
 import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.entity.CashCardSummary;
+import com.waihon.cashcard.events.CashCardEvent;
+import com.waihon.cashcard.events.CashCardEventBus;
+import com.waihon.cashcard.events.CashCardEventSink;
+import com.waihon.cashcard.repository.CardLedgerRepository;
+import com.waihon.cashcard.repository.CashCardAdjustmentCoalescer;
 import com.waihon.cashcard.repository.CashCardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 // Tells Spring that this class is a Component of type RestController and capable of
 // handling HTTP requests.
@@ -23,10 +56,33 @@ import java.util.Optional;
 @RequestMapping("/cashcards")
 class CashCardController {
 
+    // Upper bound on the number of operations accepted by one POST /cashcards/batch request.
+    static final int MAX_BATCH_SIZE = 1000;
+
     private final CashCardRepository cashCardRepository;
+    private final CardLedgerRepository cardLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CashCardCache cashCardCache;
+    private final CashCardAdjustmentCoalescer adjustmentCoalescer;
+    private final CashCardEventBus eventBus;
+    // How long one GET /cashcards/stream connection stays open before the client has to reconnect.
+    private final Duration streamTimeout;
+    // Writes one card as JSON without closing the stream, for the NDJSON export.
+    private final ObjectWriter exportWriter;
 
-    private CashCardController(CashCardRepository cashCardRepository) {
+    private CashCardController(CashCardRepository cashCardRepository, CardLedgerRepository cardLedgerRepository,
+                               TransactionTemplate transactionTemplate,
+                               CashCardCache cashCardCache, CashCardAdjustmentCoalescer adjustmentCoalescer,
+                               CashCardEventBus eventBus, ObjectMapper objectMapper,
+                               @Value("${cashcard.events.stream-timeout:30m}") Duration streamTimeout) {
         this.cashCardRepository = cashCardRepository;
+        this.cardLedgerRepository = cardLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cashCardCache = cashCardCache;
+        this.adjustmentCoalescer = adjustmentCoalescer;
+        this.eventBus = eventBus;
+        this.streamTimeout = streamTimeout;
+        this.exportWriter = objectMapper.writerFor(CashCard.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     // @GetMapping marks a method as a handler method. GET requests that matches
@@ -34,11 +90,16 @@ class CashCardController {
     @GetMapping("/{requestedId}")
     // @PathVariable makes Spring Web aware of the requestedId supplied in the HTTP request.
     // Now it's available for us to use in our handler method.
-    private ResponseEntity<CashCard> findById(@PathVariable Long requestedId, Principal principal) {
+    private ResponseEntity<CashCard> findById(@PathVariable Long requestedId, Principal principal, WebRequest request) {
         // principal.getName() will return the username provided from Basic Auth.
         CashCard cashCard= findCashCard(requestedId, principal);
         if (cashCard != null) {
-            return ResponseEntity.ok(cashCard);
+            String eTag = cardETag(cashCard.version());
+            // A client that already has this version gets a bodyless 304 instead of the JSON again.
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).body(cashCard);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -55,6 +116,9 @@ class CashCardController {
         // The save method saves a new CashCard for us, and returns the saved object
         // with a unique id provided by the database.
         CashCard savedCashCard = cashCardRepository.save(cashCardWithOwner);
+        cashCardCache.put(savedCashCard);
+        eventBus.publish(savedCashCard.owner(), CashCardEvent.CREATED, savedCashCard.id(), savedCashCard.amount(),
+                savedCashCard.version());
         // This is constructing a URI to the newly created CashCard. This is the URI
         // that the caller can then use to GET the newly-created CashCard.
         URI locationOfNewCashCard = ucb
@@ -65,50 +129,450 @@ class CashCardController {
         return ResponseEntity.created(locationOfNewCashCard).build();
     }
 
+    @PostMapping("/batch")
+    // Applies a list of create/update/delete operations in one transaction. Ownership of every
+    // referenced card is checked with a single query, and the writes go to the database as
+    // saveAll/deleteAllById calls instead of one round trip per card.
+    private ResponseEntity<List<CashCardBatchResult>> batchCashCards(@RequestBody List<CashCardBatchOperation> operations,
+                                                                     Principal principal) {
+        if (operations.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<CashCardBatchResult> results;
+        try {
+            results = transactionTemplate.execute(status -> applyBatch(operations, principal.getName()));
+        } catch (OptimisticLockingFailureException e) {
+            // Another request changed one of the updated cards after this batch read it. Nothing of
+            // the batch has been applied, so the client can simply send it again.
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        // Forget the cards this batch changed only after it has committed, so that no reader can
+        // cache a value from before the commit. Events, too, only tell of committed changes.
+        // Created cards are forgotten too: an earlier lookup of the new id may have cached a miss.
+        Map<Long, String> changes = new LinkedHashMap<>();
+        for (CashCardBatchResult result : results) {
+            if (result.status() < 300) {
+                cashCardCache.invalidate(result.id(), principal.getName());
+                switch (result.op()) {
+                    case CREATE -> changes.put(result.id(), CashCardEvent.CREATED);
+                    case UPDATE -> changes.put(result.id(), CashCardEvent.UPDATED);
+                    case DELETE -> eventBus.publishDeleted(principal.getName(), result.id());
+                }
+            }
+        }
+        publishCommitted(principal.getName(), changes);
+        return ResponseEntity.ok(results);
+    }
+
+    private List<CashCardBatchResult> applyBatch(List<CashCardBatchOperation> operations, String owner) {
+        Set<Long> referencedIds = new HashSet<>();
+        for (CashCardBatchOperation operation : operations) {
+            if (operation.isValid() && operation.op() != CashCardBatchOperation.Type.CREATE) {
+                referencedIds.add(operation.id());
+            }
+        }
+        // Cards the owner may touch, updated as we walk through the operations in order so that,
+        // for example, an update after a delete of the same card reports 404. Updates are saved with
+        // the version read here, so saveAll fails rather than overwrite a concurrent change.
+        Map<Long, CashCard> ownedCards = new HashMap<>();
+        if (!referencedIds.isEmpty()) {
+            for (CashCard cashCard : cashCardRepository.findByOwnerAndIdIn(owner, referencedIds)) {
+                ownedCards.put(cashCard.id(), cashCard);
+            }
+        }
+
+        CashCardBatchResult[] results = new CashCardBatchResult[operations.size()];
+        List<Integer> createIndexes = new ArrayList<>();
+        List<CashCard> creates = new ArrayList<>();
+        Map<Long, CashCard> updates = new LinkedHashMap<>();
+        Set<Long> deletes = new LinkedHashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            CashCardBatchOperation operation = operations.get(i);
+            if (!operation.isValid()) {
+                results[i] = new CashCardBatchResult(i, operation.op(), operation.id(), HttpStatus.BAD_REQUEST.value());
+                continue;
+            }
+            switch (operation.op()) {
+                case CREATE -> {
+                    createIndexes.add(i);
+                    creates.add(new CashCard(null, operation.amount(), owner));
+                }
+                case UPDATE -> {
+                    CashCard ownedCard = ownedCards.get(operation.id());
+                    if (ownedCard != null) {
+                        updates.put(operation.id(),
+                                new CashCard(operation.id(), operation.amount(), owner, ownedCard.version()));
+                        results[i] = new CashCardBatchResult(i, operation.op(), operation.id(), HttpStatus.NO_CONTENT.value());
+                    } else {
+                        results[i] = new CashCardBatchResult(i, operation.op(), operation.id(), HttpStatus.NOT_FOUND.value());
+                    }
+                }
+                case DELETE -> {
+                    if (ownedCards.remove(operation.id()) != null) {
+                        updates.remove(operation.id());
+                        deletes.add(operation.id());
+                        results[i] = new CashCardBatchResult(i, operation.op(), operation.id(), HttpStatus.NO_CONTENT.value());
+                    } else {
+                        results[i] = new CashCardBatchResult(i, operation.op(), operation.id(), HttpStatus.NOT_FOUND.value());
+                    }
+                }
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            cashCardRepository.deleteAllById(deletes);
+        }
+        if (!updates.isEmpty()) {
+            cashCardRepository.saveAll(updates.values());
+        }
+        if (!creates.isEmpty()) {
+            // saveAll returns the saved cards in the same order, now carrying their generated ids.
+            int created = 0;
+            for (CashCard savedCashCard : cashCardRepository.saveAll(creates)) {
+                int index = createIndexes.get(created++);
+                results[index] = new CashCardBatchResult(index, CashCardBatchOperation.Type.CREATE,
+                        savedCashCard.id(), HttpStatus.CREATED.value());
+            }
+        }
+        return List.of(results);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    // Streams every card of the owner as newline-delimited JSON. Rows are written to the response
+    // as they come off the database cursor, so memory use doesn't grow with the number of cards
+    // and the client gets the first card before the query has finished.
+    private ResponseEntity<StreamingResponseBody> exportCashCards(Principal principal) {
+        String owner = principal.getName();
+        StreamingResponseBody body = outputStream -> {
+            int[] written = {0};
+            cashCardRepository.streamByOwner(owner, cashCard -> {
+                try {
+                    exportWriter.writeValue(outputStream, cashCard);
+                    outputStream.write('\n');
+                    // Push the first card out straight away, then let the container buffer.
+                    if (written[0]++ == 0) {
+                        outputStream.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // Server-Sent Events for every change to the owner's cards from now on, instead of polling
+    // GET /cashcards. After a reconnect, the changes since the Last-Event-ID the browser sends
+    // back are replayed first, or a reset event tells the client to read the cards again.
+    private SseEmitter streamCashCards(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                       Principal principal) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Runnable unsubscribe = eventBus.subscribe(principal.getName(), lastEventId, new CashCardEventSink() {
+            @Override
+            public void send(CashCardEvent event) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(event.eventId())
+                        .name(event.type())
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment(""));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    @GetMapping("/summary")
+    // Count, total, min and max of the owner's cards. These come from one row of cash_card_summary,
+    // which the database updates along with every write to cash_card, so the cost doesn't grow
+    // with the number of cards.
+    private ResponseEntity<CashCardSummary> summarizeCashCards(Principal principal) {
+        return ResponseEntity.ok(cashCardRepository.findSummaryByOwner(principal.getName()));
+    }
+
     @GetMapping()
     // Since we specified the URI parameters of page=0&size=1, pageable will contain
     // the values we need.
-    private ResponseEntity<List<CashCard>> findAll(Pageable pageable, Principal principal) {
-        Page<CashCard> page = cashCardRepository.findByOwner(principal.getName(),
-                // PageRequest is a basic Java Bean implementation of Pageable. Things that
-                // want paging and sorting implementation often support this, such has
-                // some types of Spring Data Repositories.
-                PageRequest.of(
-                        pageable.getPageNumber(),
-                        pageable.getPageSize(),
-                        // getSortOr() method provides default values for the page (0), size (20),
-                        // and sort parameters.
-                        pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))
-                )
+    private ResponseEntity<List<CashCard>> findAll(Pageable pageable,
+                                                   // Opaque keyset cursor. When present (even empty), the
+                                                   // page after that position is returned instead of an OFFSET page.
+                                                   @RequestParam(required = false) String after,
+                                                   // Only cards with amounts in this range, both inclusive.
+                                                   @RequestParam(required = false) Double minAmount,
+                                                   @RequestParam(required = false) Double maxAmount,
+                                                   Principal principal,
+                                                   WebRequest request) {
+        if (minAmount != null && maxAmount != null && minAmount > maxAmount) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Read the change counter before the page, never after: a write that lands in between then
+        // makes the page newer than its ETag, which only costs the client a 200 later on.
+        String eTag = listETag(cashCardRepository.findChangeCountByOwner(principal.getName()));
+        // If none of the owner's cards changed, no page of them did either, so a 304 needs no rows.
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        if (minAmount != null || maxAmount != null) {
+            // An open end of the range is closed with the owner's lowest or highest amount, so that
+            // a single query shape serves every range.
+            CashCardSummary summary = cashCardRepository.findSummaryByOwner(principal.getName());
+            if (summary.count() == 0) {
+                return ResponseEntity.ok().eTag(eTag).body(List.of());
+            }
+            minAmount = minAmount != null ? minAmount : summary.min();
+            maxAmount = maxAmount != null ? maxAmount : summary.max();
+        }
+        if (after != null) {
+            return findAllAfter(after, minAmount, maxAmount, pageable, principal, eTag);
+        }
+        // PageRequest is a basic Java Bean implementation of Pageable. Things that
+        // want paging and sorting implementation often support this, such has
+        // some types of Spring Data Repositories.
+        PageRequest pageRequest = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                // getSortOr() method provides default values for the page (0), size (20),
+                // and sort parameters.
+                pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))
         );
-        return ResponseEntity.ok(page.getContent());
+        Page<CashCard> page = minAmount == null
+                ? cashCardRepository.findByOwner(principal.getName(), pageRequest)
+                : cashCardRepository.findByOwnerAndAmountBetween(principal.getName(), minAmount, maxAmount, pageRequest);
+        return ResponseEntity.ok().eTag(eTag).body(page.getContent());
+    }
+
+    // Keyset (seek) paging over the default (amount, id) order. Every page costs the same as the
+    // first one, because the database seeks to the cursor instead of skipping OFFSET rows. With an
+    // amount range, the first page seeks to minAmount and every page stops at maxAmount.
+    private ResponseEntity<List<CashCard>> findAllAfter(String after, Double minAmount, Double maxAmount,
+                                                        Pageable pageable, Principal principal, String eTag) {
+        // Only the default order has an index to seek on.
+        if (pageable.getSort().isSorted()) {
+            return ResponseEntity.badRequest().build();
+        }
+        CashCardCursor cursor = null;
+        if (!after.isEmpty()) {
+            try {
+                cursor = CashCardCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        int size = pageable.getPageSize();
+        List<CashCard> cashCards;
+        if (minAmount != null) {
+            if (cursor == null || cursor.amount() < minAmount) {
+                // Card ids start at 1, so this is just before the first card at minAmount.
+                cursor = new CashCardCursor(minAmount, 0L);
+            }
+            cashCards = cashCardRepository.findKeysetPageByOwnerAfterUpTo(
+                    principal.getName(), cursor.amount(), cursor.id(), maxAmount, size);
+        } else if (cursor == null) {
+            cashCards = cashCardRepository.findKeysetPageByOwner(principal.getName(), size);
+        } else {
+            cashCards = cashCardRepository.findKeysetPageByOwnerAfter(
+                    principal.getName(), cursor.amount(), cursor.id(), size);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+        // A full page may have more cards after it, so tell the client where to continue.
+        if (cashCards.size() == size) {
+            URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page")
+                    .replaceQueryParam("after", CashCardCursor.after(cashCards.get(size - 1)).encode())
+                    .build(true)
+                    .toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(cashCards);
+    }
+
+    @GetMapping("/{requestedId}/history")
+    // Every change to the amount of the card, oldest first, including its creation and deletion.
+    // Entries appear once CardLedgerWriter has moved them to card_ledger, a moment after the change
+    // committed. Paging is by keyset on the entry id: a full page links to the next one.
+    private ResponseEntity<List<CardLedgerEntry>> findHistory(@PathVariable Long requestedId,
+                                                              @RequestParam(defaultValue = "0") long after,
+                                                              Pageable pageable,
+                                                              Principal principal) {
+        // Only the order of the entries has an index to seek on.
+        if (pageable.getSort().isSorted()) {
+            return ResponseEntity.badRequest().build();
+        }
+        int size = pageable.getPageSize();
+        String owner = principal.getName();
+        List<CardLedgerEntry> entries = cardLedgerRepository.findPageByCardIdAndOwnerAfter(requestedId, owner, after, size);
+        // Nothing to show is only a 404 if the owner never had such a card. A new card may not be in
+        // the ledger yet, and a deleted one still has its history.
+        if (entries.isEmpty() && !cashCardRepository.existsByIdAndOwner(requestedId, owner)
+                && !cardLedgerRepository.existsByCardIdAndOwner(requestedId, owner)) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (entries.size() == size) {
+            URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page")
+                    .replaceQueryParam("after", entries.get(size - 1).id())
+                    .build(true)
+                    .toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(entries);
     }
 
     @PutMapping("/{requestedId}")
     // Add the Principal as a method argument, provided automatically by Spring Security.
-    private ResponseEntity<Void> putCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate, Principal principal) {
-        // Scope our retrieval of the CashCard to the submitted requestedId and Principal to ensure only the authenticated,
-        // authorized owner may update this CashCard.
-        CashCard cashCard = findCashCard(requestedId, principal);
-        if (cashCard == null) {
-            return ResponseEntity.notFound().build();
+    private ResponseEntity<Void> putCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             Principal principal) {
+        String owner = principal.getName();
+        // Scope the update to the submitted requestedId and Principal to ensure only the authenticated,
+        // authorized owner may update this CashCard. The ownership check, the If-Match check and
+        // the write are one statement, so no other request can slip in between them.
+        Set<Long> versions = ifMatchVersions(ifMatch);
+        int updated;
+        if (versions == null) {
+            updated = cashCardRepository.updateAmountByIdAndOwner(requestedId, owner, cashCardUpdate.amount());
+        } else {
+            updated = versions.isEmpty() ? 0 : cashCardRepository.updateAmountByIdAndOwnerAndVersionIn(
+                    requestedId, owner, cashCardUpdate.amount(), versions);
+        }
+        if (updated == 0) {
+            return notWritten(requestedId, owner, versions);
         }
-        // Build a CashCard with updated values and save it.
-        CashCard updatedCashCard = new CashCard(cashCard.id(), cashCardUpdate.amount(), principal.getName());
-        cashCardRepository.save(updatedCashCard);
+        cashCardCache.invalidate(requestedId, owner);
+        publishCommitted(owner, Map.of(requestedId, CashCardEvent.UPDATED));
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/{requestedId}/adjust")
+    // Adds a signed delta to the amount of a card. Unlike PUT, this never reads the old amount in
+    // the application: the database applies "amount = amount + delta" atomically, so concurrent
+    // top-ups of the same card can't overwrite each other.
+    private CompletableFuture<ResponseEntity<Void>> adjustCashCard(@PathVariable Long requestedId,
+                                                                   @RequestBody CashCardAdjustment adjustment,
+                                                                   Principal principal) {
+        if (adjustment.delta() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        String owner = principal.getName();
+        if (adjustment.nonNegative()) {
+            // The guard is part of the UPDATE, so a 0 here means either no such card or not enough funds.
+            if (cashCardRepository.adjustAmountByIdAndOwnerIfNotNegative(requestedId, owner, adjustment.delta()) > 0) {
+                cashCardCache.invalidate(requestedId, owner);
+                publishCommitted(owner, Map.of(requestedId, CashCardEvent.UPDATED));
+                return CompletableFuture.completedFuture(ResponseEntity.noContent().build());
+            }
+            if (cashCardRepository.existsByIdAndOwner(requestedId, owner)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).build());
+            }
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        // Unguarded adjustments of very hot cards may be merged with others for a few milliseconds.
+        CompletableFuture<Integer> rows = adjustmentCoalescer.isEnabled()
+                ? adjustmentCoalescer.adjust(requestedId, owner, adjustment.delta())
+                : CompletableFuture.completedFuture(
+                        cashCardRepository.adjustAmountByIdAndOwner(requestedId, owner, adjustment.delta()));
+        return rows.thenApply(updated -> {
+            if (updated == 0) {
+                return ResponseEntity.notFound().build();
+            }
+            cashCardCache.invalidate(requestedId, owner);
+            publishCommitted(owner, Map.of(requestedId, CashCardEvent.UPDATED));
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    // Publishes created or updated events (by card id) with the cards as they were committed, read
+    // back from the database: the stored amount, which for an adjustment only the database knows,
+    // and the version, by which the event bus puts concurrent changes to a card in commit order.
+    // That costs a query per request, so it is only done for owners who have a stream open. A card
+    // that has been deleted since is left to the deleted event.
+    private void publishCommitted(String owner, Map<Long, String> types) {
+        if (types.isEmpty() || !eventBus.isWatched(owner)) {
+            return;
+        }
+        for (CashCard cashCard : cashCardRepository.findByOwnerAndIdIn(owner, types.keySet())) {
+            eventBus.publish(owner, types.get(cashCard.id()), cashCard.id(), cashCard.amount(), cashCard.version());
+        }
+    }
+
+    // Reads through the owner-scoped cache, so that hot cards and repeated 404s don't go to the database.
     private CashCard findCashCard(Long requestedId, Principal principal) {
-        return cashCardRepository.findByIdAndOwner(requestedId, principal.getName());
+        return cashCardCache.get(requestedId, principal.getName(),
+                () -> cashCardRepository.findByIdAndOwner(requestedId, principal.getName()));
     }
 
     @DeleteMapping("/{id}")
-    private ResponseEntity<Void> deleteCashCard(@PathVariable Long id, Principal principal) {
-        if (cashCardRepository.existsByIdAndOwner(id, principal.getName())) {
-            cashCardRepository.deleteById(id);
-            return ResponseEntity.noContent().build();
+    private ResponseEntity<Void> deleteCashCard(@PathVariable Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                Principal principal) {
+        String owner = principal.getName();
+        // As with PUT, checking ownership (and If-Match) and deleting is a single statement.
+        Set<Long> versions = ifMatchVersions(ifMatch);
+        int deleted;
+        if (versions == null) {
+            deleted = cashCardRepository.deleteByIdAndOwner(id, owner);
+        } else {
+            deleted = versions.isEmpty() ? 0 : cashCardRepository.deleteByIdAndOwnerAndVersionIn(id, owner, versions);
+        }
+        if (deleted == 0) {
+            return notWritten(id, owner, versions);
+        }
+        cashCardCache.invalidate(id, owner);
+        eventBus.publishDeleted(owner, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // After a write that affected no rows: 412 if it was conditional and the owner's card is there
+    // at another version, otherwise 404.
+    private ResponseEntity<Void> notWritten(Long id, String owner, Set<Long> versions) {
+        if (versions != null && cashCardRepository.existsByIdAndOwner(id, owner)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
         return ResponseEntity.notFound().build();
     }
+
+    // Strong ETags. A card's is its version, a list page's is the owner's change counter. ETags are
+    // compared per URL, so neither needs to say which card or page it belongs to.
+    private static String cardETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private static String listETag(long changeCount) {
+        return "\"" + changeCount + "\"";
+    }
+
+    // The versions an If-Match header asks for, or null if any version will do (no header, or *).
+    // Weak and foreign tags can't match a strong comparison, so they contribute no version.
+    private static Set<Long> ifMatchVersions(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (ETag eTag : ETag.parse(ifMatch)) {
+            if (eTag.isWildcard()) {
+                return null;
+            }
+            if (!eTag.weak()) {
+                try {
+                    versions.add(Long.parseLong(eTag.tag()));
+                } catch (NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        }
+        return versions;
+    }
 }
@@ -0,0 +1,32 @@
+package com.waihon.cashcard.controller;
+
+import com.waihon.cashcard.entity.CashCard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// The position of the last card on a keyset page. Clients only ever see it as an opaque
+// token in the after= parameter, so its format can change without breaking them.
+record CashCardCursor(Double amount, Long id) {
+
+    static CashCardCursor after(CashCard cashCard) {
+        return new CashCardCursor(cashCard.amount(), cashCard.id());
+    }
+
+    // Throws IllegalArgumentException when the token was not produced by encode().
+    static CashCardCursor decode(String token) {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+        return new CashCardCursor(
+                Double.valueOf(decoded.substring(0, separator)),
+                Long.valueOf(decoded.substring(separator + 1)));
+    }
+
+    String encode() {
+        String plain = amount + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+}
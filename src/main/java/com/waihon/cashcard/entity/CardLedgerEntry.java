@@ -0,0 +1,14 @@
+package com.waihon.cashcard.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+
+// One change to the amount of a card, from card_ledger. type is created, updated or deleted;
+// oldAmount is null for created and newAmount for deleted. version is the card's version after
+// the change, or the one it was deleted at.
+@Table("card_ledger")
+public record CardLedgerEntry(@Id Long id, Long cardId, String type, Double oldAmount, Double newAmount,
+                              Long version, OffsetDateTime changedAt) {
+}
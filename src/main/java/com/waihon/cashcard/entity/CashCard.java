@@ -1,6 +1,15 @@
 package com.waihon.cashcard.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
-public record CashCard(@Id Long id, Double amount, String owner) {
+// version is bumped on every write to the card. It is the card's ETag rather than part of its
+// JSON, so it's ignored by Jackson.
+public record CashCard(@Id Long id, Double amount, String owner, @Version @JsonIgnore Long version) {
+
+    // A card that hasn't been read from the database, so there is no version to check against.
+    public CashCard(Long id, Double amount, String owner) {
+        this(id, amount, owner, null);
+    }
 }
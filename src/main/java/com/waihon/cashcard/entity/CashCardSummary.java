@@ -0,0 +1,9 @@
+package com.waihon.cashcard.entity;
+
+// Aggregates over all the cards of one owner. min and max are null when the owner has no cards.
+public record CashCardSummary(String owner, long count, Double total, Double min, Double max) {
+
+    public static CashCardSummary empty(String owner) {
+        return new CashCardSummary(owner, 0, 0.0, null, null);
+    }
+}
@@ -0,0 +1,19 @@
+package com.waihon.cashcard.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// A change to one of an owner's cards, as sent on GET /cashcards/stream. eventId goes out as the
+// SSE id rather than in the JSON, and is what a reconnecting client sends back as Last-Event-ID.
+//
+// type is created, updated or deleted, and amount is the card's amount after the change (none
+// for deleted). A reset event has no card: the client missed changes that can no longer be
+// replayed and should read the cards again.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CashCardEvent(@JsonIgnore String eventId, String type, Long id, Double amount) {
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String RESET = "reset";
+}
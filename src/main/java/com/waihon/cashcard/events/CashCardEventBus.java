@@ -0,0 +1,275 @@
+package com.waihon.cashcard.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process fan-out of card changes to the owner's open GET /cashcards/stream connections.
+//
+// Publishing never waits for a client. Each subscriber has a bounded buffer, drained into its
+// sink by a small pool of sender threads. A subscriber whose buffer is full is too slow to keep
+// up: it is disconnected rather than allowed to hold events (and memory) back, and can resume
+// where it left off by reconnecting with Last-Event-ID.
+//
+// Resuming works from a short history of the owner's latest events. It is only kept for owners
+// who are watching, or did so within the retention period, so nothing is recorded for everyone
+// else. Event ids carry an epoch that changes on every start, so an id from before a restart, or
+// one that has dropped out of the history, gets a reset event instead of a silent gap.
+@Component
+public class CashCardEventBus {
+
+    // Queued like an event, so that it can't overtake one, but sent as an SSE comment.
+    private static final CashCardEvent HEARTBEAT = new CashCardEvent(null, null, null, null);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final int historySize;
+    private final int bufferSize;
+    private final long retentionNanos;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter disconnected;
+
+    public CashCardEventBus(@Value("${cashcard.events.history-size:256}") int historySize,
+                            @Value("${cashcard.events.buffer-size:64}") int bufferSize,
+                            @Value("${cashcard.events.retention:5m}") Duration retention,
+                            @Value("${cashcard.events.heartbeat:15s}") Duration heartbeat,
+                            @Value("${cashcard.events.sender-threads:4}") int senderThreads,
+                            MeterRegistry meterRegistry) {
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.retentionNanos = retention.toNanos();
+        this.senders = Executors.newFixedThreadPool(senderThreads);
+        heartbeats.scheduleAtFixedRate(this::beat, heartbeat.toNanos(), heartbeat.toNanos(), TimeUnit.NANOSECONDS);
+        Gauge.builder("cashcard.events.subscribers", subscribers, AtomicInteger::get)
+                .description("Open GET /cashcards/stream connections")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("cashcard.events.disconnected")
+                .description("Streams closed because the client didn't keep up with its events")
+                .register(meterRegistry);
+    }
+
+    // Whether changes to the owner's cards are being recorded. Publishers can use this to skip
+    // work that only matters to an event, such as reading back an adjusted amount.
+    public boolean isWatched(String owner) {
+        return channels.containsKey(owner);
+    }
+
+    // Publishes a change that has been committed. version is the card's version after it: requests
+    // publish after their writes have committed, which need not be the order of the commits, so an
+    // event older than one already published for the card is dropped. What a client saw last is
+    // then always the card's latest state.
+    public void publish(String owner, String type, Long id, Double amount, long version) {
+        Channel channel = channels.get(owner);
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel) {
+            if (channel.removed) {
+                return;
+            }
+            Long published = channel.versions.get(id);
+            if (published != null && published >= version) {
+                return;
+            }
+            channel.versions.put(id, version);
+            CashCardEvent event = new CashCardEvent(epoch + "-" + sequence.incrementAndGet(), type, id, amount);
+            if (channel.history.size() == historySize) {
+                channel.recordedAfter = sequenceOf(channel.history.removeFirst().eventId());
+            }
+            channel.history.addLast(event);
+            for (Subscriber subscriber : List.copyOf(channel.subscribers)) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    // A deletion is the last change to a card, whatever its version.
+    public void publishDeleted(String owner, Long id) {
+        publish(owner, CashCardEvent.DELETED, id, null, Long.MAX_VALUE);
+    }
+
+    // Starts delivering the owner's events to sink: first those after lastEventId (or a reset, if
+    // they can't all be replayed), then new ones. Cancel the subscription once the sink is gone.
+    public Runnable subscribe(String owner, String lastEventId, CashCardEventSink sink) {
+        while (true) {
+            Channel channel = channels.computeIfAbsent(owner, key -> new Channel());
+            synchronized (channel) {
+                if (channel.removed) {
+                    // Swept just now; start over with a new channel.
+                    continue;
+                }
+                List<CashCardEvent> replay = replay(channel, lastEventId);
+                Subscriber subscriber = new Subscriber(channel, sink, bufferSize + replay.size());
+                replay.forEach(subscriber::offer);
+                channel.subscribers.add(subscriber);
+                subscribers.incrementAndGet();
+                return subscriber::cancel;
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private List<CashCardEvent> replay(Channel channel, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        long last = sequenceOf(lastEventId);
+        if (last < channel.recordedAfter) {
+            // The client may have missed events that are no longer known, and has to start over.
+            return List.of(new CashCardEvent(epoch + "-" + sequence.get(), CashCardEvent.RESET, null, null));
+        }
+        List<CashCardEvent> replay = new ArrayList<>();
+        for (CashCardEvent event : channel.history) {
+            if (sequenceOf(event.eventId()) > last) {
+                replay.add(event);
+            }
+        }
+        return replay;
+    }
+
+    // The sequence number of an event id of this run, or -1 for anything else.
+    private long sequenceOf(String eventId) {
+        int dash = eventId.indexOf('-');
+        if (dash < 0 || !eventId.substring(0, dash).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void beat() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Channel> entry : channels.entrySet()) {
+            Channel channel = entry.getValue();
+            synchronized (channel) {
+                List.copyOf(channel.subscribers).forEach(subscriber -> subscriber.offer(HEARTBEAT));
+                if (channel.subscribers.isEmpty() && now - channel.idleSince > retentionNanos) {
+                    channel.removed = true;
+                    channels.remove(entry.getKey(), channel);
+                }
+            }
+        }
+    }
+
+    private final class Channel {
+        private final ArrayDeque<CashCardEvent> history = new ArrayDeque<>();
+        // The version of the last event published for each card.
+        private final Map<Long, Long> versions = new HashMap<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        // Every event of the owner after this sequence number is in the history.
+        private long recordedAfter = sequence.get();
+        private long idleSince = System.nanoTime();
+        private boolean removed;
+    }
+
+    private final class Subscriber {
+        private final Channel channel;
+        private final CashCardEventSink sink;
+        private final BlockingQueue<CashCardEvent> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        // Set before cancelling a subscriber whose buffer overflowed; its sender then ends the stream.
+        private volatile boolean overflowed;
+        private boolean closed;
+
+        private Subscriber(Channel channel, CashCardEventSink sink, int capacity) {
+            this.channel = channel;
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        // Called with the channel locked.
+        private void offer(CashCardEvent event) {
+            if (cancelled.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                disconnected.increment();
+                overflowed = true;
+                cancel();
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                CashCardEvent event;
+                while (!cancelled.get() && (event = buffer.poll()) != null) {
+                    if (event == HEARTBEAT) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send(event);
+                    }
+                }
+                // Ending the stream waits for a send in progress, which takes as long as the slow
+                // client does, so it is done here rather than by the publisher that overflowed the
+                // buffer while holding the owner's channel.
+                if (overflowed && !closed) {
+                    closed = true;
+                    sink.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                // The client has gone away.
+                cancel();
+            } finally {
+                sending.set(false);
+            }
+            // Work offered after the last check, but before sending was reset, would be stranded.
+            if (hasWork() && sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private boolean hasWork() {
+            return cancelled.get() ? overflowed && !closed : !buffer.isEmpty();
+        }
+
+        private void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.decrementAndGet();
+            synchronized (channel) {
+                channel.subscribers.remove(this);
+                if (channel.subscribers.isEmpty()) {
+                    channel.idleSince = System.nanoTime();
+                }
+            }
+        }
+    }
+}
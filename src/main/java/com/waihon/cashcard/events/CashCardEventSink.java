@@ -0,0 +1,17 @@
+package com.waihon.cashcard.events;
+
+import java.io.IOException;
+
+// Where CashCardEventBus delivers one subscriber's events, such as an SseEmitter. Calls for one
+// subscriber never overlap, and may block while the client is slow to read.
+public interface CashCardEventSink {
+
+    void send(CashCardEvent event) throws IOException;
+
+    // Something to keep an idle connection open, and to find out that the client has gone.
+    void heartbeat() throws IOException;
+
+    // Ends the stream from the server side, for a client that couldn't keep up. Like the other
+    // calls, this comes from a sender thread, after any send in progress has returned.
+    void close();
+}
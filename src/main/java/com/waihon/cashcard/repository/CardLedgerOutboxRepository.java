@@ -0,0 +1,14 @@
+package com.waihon.cashcard.repository;
+
+// Custom repository fragment for moving changes from card_ledger_outbox, where CardLedgerTrigger
+// records them, to card_ledger. Spring Data picks up the implementation from
+// CardLedgerOutboxRepositoryImpl.
+public interface CardLedgerOutboxRepository {
+
+    // Moves up to limit of the oldest outbox rows into card_ledger, in one transaction. Returns the
+    // number of rows moved, so anything less than limit means the outbox is (for now) empty.
+    int moveOutboxToLedger(int limit);
+
+    // The number of changes waiting in the outbox.
+    int countOutbox();
+}
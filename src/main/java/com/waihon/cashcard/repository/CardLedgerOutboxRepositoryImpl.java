@@ -0,0 +1,61 @@
+package com.waihon.cashcard.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+class CardLedgerOutboxRepositoryImpl implements CardLedgerOutboxRepository {
+
+    private static final String SELECT_OUTBOX = """
+            SELECT id, card_id, owner, type, old_amount, new_amount, version, changed_at
+            FROM card_ledger_outbox ORDER BY id LIMIT ?""";
+    private static final String INSERT_LEDGER = """
+            INSERT INTO card_ledger (id, card_id, owner, type, old_amount, new_amount, version, changed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final String DELETE_OUTBOX = "DELETE FROM card_ledger_outbox WHERE id = ?";
+    private static final String COUNT_OUTBOX = "SELECT COUNT(*) FROM card_ledger_outbox";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    CardLedgerOutboxRepositoryImpl(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public int moveOutboxToLedger(int limit) {
+        Integer moved = transactionTemplate.execute(status -> {
+            // Only committed changes are visible here. One whose transaction commits after a
+            // change with a higher id is simply picked up by a later call.
+            List<Object[]> rows = jdbcTemplate.query(SELECT_OUTBOX, (resultSet, rowNum) -> {
+                Object[] row = new Object[8];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = resultSet.getObject(i + 1);
+                }
+                return row;
+            }, limit);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            List<Object[]> ids = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add(new Object[] {row[0]});
+            }
+            jdbcTemplate.batchUpdate(INSERT_LEDGER, rows);
+            jdbcTemplate.batchUpdate(DELETE_OUTBOX, ids);
+            return rows.size();
+        });
+        return moved == null ? 0 : moved;
+    }
+
+    @Override
+    public int countOutbox() {
+        Integer count = jdbcTemplate.queryForObject(COUNT_OUTBOX, Integer.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,22 @@
+package com.waihon.cashcard.repository;
+
+import com.waihon.cashcard.entity.CardLedgerEntry;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+public interface CardLedgerRepository extends Repository<CardLedgerEntry, Long>, CardLedgerOutboxRepository {
+
+    // Keyset (seek) paging through the history of a card, oldest change first: the entries after
+    // the one with id after (0 for the first page), straight from the (owner, card_id, id) index.
+    @Query("""
+            SELECT id, card_id, type, old_amount, new_amount, version, changed_at FROM card_ledger
+            WHERE owner = :owner AND card_id = :cardId AND id > :after
+            ORDER BY id
+            LIMIT :limit""")
+    List<CardLedgerEntry> findPageByCardIdAndOwnerAfter(Long cardId, String owner, long after, int limit);
+
+    @Query("SELECT EXISTS (SELECT 1 FROM card_ledger WHERE owner = :owner AND card_id = :cardId)")
+    boolean existsByCardIdAndOwner(Long cardId, String owner);
+}
@@ -0,0 +1,98 @@
+package com.waihon.cashcard.repository;
+
+import org.h2.api.Trigger;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// H2 calls this for every row inserted into, updated in or deleted from cash_card (see schema.sql),
+// inside the transaction that made the change. It records the change in card_ledger_outbox, which
+// makes it part of the ledger the moment the transaction commits, whichever code path made it.
+// CardLedgerWriter takes it from there.
+//
+// Writes that leave the amount as it was (a PUT of the same amount, say) are not balance changes
+// and leave no entry.
+public class CardLedgerTrigger implements Trigger {
+
+    private static final String INSERT_OUTBOX = """
+            INSERT INTO card_ledger_outbox (card_id, owner, type, old_amount, new_amount, version)
+            VALUES (?, ?, ?, ?, ?, ?)""";
+
+    // Positions of the columns we need in the row arrays H2 passes to fire().
+    private int idColumn;
+    private int amountColumn;
+    private int ownerColumn;
+    private int versionColumn;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) throws SQLException {
+        idColumn = -1;
+        amountColumn = -1;
+        ownerColumn = -1;
+        versionColumn = -1;
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                int index = columns.getInt("ORDINAL_POSITION") - 1;
+                switch (columns.getString("COLUMN_NAME").toUpperCase()) {
+                    case "ID" -> idColumn = index;
+                    case "AMOUNT" -> amountColumn = index;
+                    case "OWNER" -> ownerColumn = index;
+                    case "VERSION" -> versionColumn = index;
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (idColumn < 0 || amountColumn < 0 || ownerColumn < 0 || versionColumn < 0) {
+            throw new SQLException("Table " + tableName + " has no ID, AMOUNT, OWNER and VERSION columns");
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        BigDecimal oldAmount = oldRow == null ? null : decimal(oldRow[amountColumn]);
+        BigDecimal newAmount = newRow == null ? null : decimal(newRow[amountColumn]);
+        if (oldRow != null && newRow != null) {
+            if (!oldRow[ownerColumn].equals(newRow[ownerColumn])) {
+                // A card that changed hands leaves one owner's ledger and enters the other's.
+                record(conn, oldRow, "deleted", oldAmount, null);
+                record(conn, newRow, "created", null, newAmount);
+            } else if (oldAmount.compareTo(newAmount) != 0) {
+                record(conn, newRow, "updated", oldAmount, newAmount);
+            }
+        } else if (newRow != null) {
+            record(conn, newRow, "created", null, newAmount);
+        } else {
+            record(conn, oldRow, "deleted", oldAmount, null);
+        }
+    }
+
+    private void record(Connection conn, Object[] row, String type, BigDecimal oldAmount, BigDecimal newAmount)
+            throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_OUTBOX)) {
+            insert.setLong(1, ((Number) row[idColumn]).longValue());
+            insert.setString(2, (String) row[ownerColumn]);
+            insert.setString(3, type);
+            insert.setBigDecimal(4, oldAmount);
+            insert.setBigDecimal(5, newAmount);
+            insert.setLong(6, ((Number) row[versionColumn]).longValue());
+            insert.executeUpdate();
+        }
+    }
+
+    private static BigDecimal decimal(Object amount) {
+        return amount instanceof BigDecimal decimal ? decimal : new BigDecimal(amount.toString());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
@@ -0,0 +1,87 @@
+package com.waihon.cashcard.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Writes the card ledger behind the requests that change cards.
+//
+// CardLedgerTrigger records each balance change in card_ledger_outbox as part of the write that
+// made it, which is a single-row insert; nothing is lost in a crash, and a busy ledger can't hold
+// up card writes. Every flush-interval, this moves whatever is in the outbox into card_ledger in
+// JDBC batches of up to batch-size rows, one transaction each, until the outbox is empty.
+//
+// The outbox is the queue between the two, so memory use is bounded by one batch however far the
+// ledger falls behind. How far that is shows as the cashcard.ledger.backlog gauge; the time each
+// batch takes is cashcard.ledger.flush.
+@Component
+public class CardLedgerWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(CardLedgerWriter.class);
+
+    private final CardLedgerRepository cardLedgerRepository;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final Timer flushTimer;
+
+    public CardLedgerWriter(CardLedgerRepository cardLedgerRepository,
+                            @Value("${cashcard.ledger.flush-interval:200ms}") Duration flushInterval,
+                            @Value("${cashcard.ledger.batch-size:500}") int batchSize,
+                            MeterRegistry meterRegistry) {
+        this.cardLedgerRepository = cardLedgerRepository;
+        this.batchSize = batchSize;
+        Gauge.builder("cashcard.ledger.backlog", backlog, AtomicInteger::get)
+                .description("Card changes waiting in card_ledger_outbox, as of the last flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("cashcard.ledger.flush")
+                .description("Moving one batch of changes from card_ledger_outbox to card_ledger")
+                .register(meterRegistry);
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushInterval.toNanos(), flushInterval.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    // Moves everything that is in the outbox now. Returns the number of changes moved.
+    public int flush() {
+        int total = 0;
+        int moved;
+        do {
+            long start = System.nanoTime();
+            moved = cardLedgerRepository.moveOutboxToLedger(batchSize);
+            if (moved > 0) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            total += moved;
+        } while (moved >= batchSize);
+        backlog.set(cardLedgerRepository.countOutbox());
+        return total;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        // Not needed for durability, the outbox keeps what is left, but it leaves nothing behind.
+        flushSafely();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // The changes stay in the outbox for the next attempt.
+            log.warn("Could not write the card ledger", e);
+        }
+    }
+}
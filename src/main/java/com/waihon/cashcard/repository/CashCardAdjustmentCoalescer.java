@@ -0,0 +1,92 @@
+package com.waihon.cashcard.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Merges adjustments of the same card that arrive within a short window into a single UPDATE.
+//
+// Even atomic "amount = amount + ?" updates queue up behind each other on the row lock of a very
+// hot card. Collecting the deltas in memory for a few milliseconds and writing their sum turns
+// many of those updates into one. Every caller still gets the outcome (rows affected) of the
+// UPDATE that carried its delta, so nothing is acknowledged before it has been written.
+//
+// The window is set with cashcard.adjust.coalesce-window; the default of 0 turns coalescing off.
+@Component
+public class CashCardAdjustmentCoalescer {
+
+    private final CashCardRepository cashCardRepository;
+    private final long windowNanos;
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public CashCardAdjustmentCoalescer(CashCardRepository cashCardRepository,
+                                       @Value("${cashcard.adjust.coalesce-window:0ms}") Duration window,
+                                       @Value("${cashcard.adjust.flush-threads:4}") int flushThreads) {
+        this.cashCardRepository = cashCardRepository;
+        this.windowNanos = window.toNanos();
+        this.flusher = Executors.newScheduledThreadPool(flushThreads);
+    }
+
+    public boolean isEnabled() {
+        return windowNanos > 0;
+    }
+
+    // Adds delta to the card within the next window. The future completes with the number of rows
+    // the merged UPDATE affected: 0 means the card doesn't exist or isn't owned by owner.
+    public CompletableFuture<Integer> adjust(Long id, String owner, double delta) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Key key = new Key(id, owner);
+        // compute() runs atomically per key, so a delta is either added to a batch that hasn't been
+        // taken for flushing yet, or starts a new one.
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new Pending();
+                Pending scheduled = batch;
+                flusher.schedule(() -> flush(k, scheduled), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            batch.delta += delta;
+            batch.waiters.add(result);
+            return batch;
+        });
+        return result;
+    }
+
+    private void flush(Key key, Pending batch) {
+        // After this removal no other thread can reach the batch any more.
+        pending.remove(key, batch);
+        try {
+            int rows = cashCardRepository.adjustAmountByIdAndOwner(key.id(), key.owner(), batch.delta);
+            batch.waiters.forEach(waiter -> waiter.complete(rows));
+        } catch (RuntimeException e) {
+            batch.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Write whatever is still waiting before the application goes away.
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        pending.forEach(this::flush);
+    }
+
+    private record Key(Long id, String owner) {
+    }
+
+    // Only touched inside pending.compute() until the batch is removed for flushing.
+    private static final class Pending {
+        private double delta;
+        private final List<CompletableFuture<Integer>> waiters = new ArrayList<>();
+    }
+}
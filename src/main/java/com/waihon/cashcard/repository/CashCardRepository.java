@@ -3,11 +3,94 @@ package com.waihon.cashcard.repository;
 import com.waihon.cashcard.entity.CashCard;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
-public interface CashCardRepository extends CrudRepository<CashCard, Long>, PagingAndSortingRepository<CashCard, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface CashCardRepository extends CrudRepository<CashCard, Long>, PagingAndSortingRepository<CashCard, Long>,
+        CashCardStreamingRepository, CashCardSummaryRepository {
     CashCard findByIdAndOwner(Long id, String owner);
     Page<CashCard> findByOwner(String owner, PageRequest pageRequest);
+    // The owner's cards with minAmount <= amount <= maxAmount. Like findByOwner, this reads a range
+    // of the (owner, amount, id) index rather than all of the owner's cards.
+    Page<CashCard> findByOwnerAndAmountBetween(String owner, Double minAmount, Double maxAmount,
+                                               PageRequest pageRequest);
     boolean existsByIdAndOwner(Long id, String owner);
+    List<CashCard> findByOwnerAndIdIn(String owner, Collection<Long> ids);
+
+    // Single-statement writes scoped by owner. They return the number of rows affected, so a 0 means
+    // the card doesn't exist or belongs to someone else, without a separate SELECT beforehand.
+    // Every UPDATE bumps the version, as save() does for @Version.
+    @Modifying
+    @Query("UPDATE cash_card SET amount = :amount, version = version + 1 WHERE id = :id AND owner = :owner")
+    int updateAmountByIdAndOwner(Long id, String owner, Double amount);
+
+    @Modifying
+    @Query("DELETE FROM cash_card WHERE id = :id AND owner = :owner")
+    int deleteByIdAndOwner(Long id, String owner);
+
+    // If-Match variants of the above: they only write if the card is still at one of versions, so
+    // a 0 also covers a card that has changed since the client read it.
+    @Modifying
+    @Query("""
+            UPDATE cash_card SET amount = :amount, version = version + 1
+            WHERE id = :id AND owner = :owner AND version IN (:versions)""")
+    int updateAmountByIdAndOwnerAndVersionIn(Long id, String owner, Double amount, Collection<Long> versions);
+
+    @Modifying
+    @Query("DELETE FROM cash_card WHERE id = :id AND owner = :owner AND version IN (:versions)")
+    int deleteByIdAndOwnerAndVersionIn(Long id, String owner, Collection<Long> versions);
+
+    // Atomic in-database balance adjustments. Concurrent adjustments of the same card are applied
+    // one after the other by the database, so none of them can be lost.
+    @Modifying
+    @Query("UPDATE cash_card SET amount = amount + :delta, version = version + 1 WHERE id = :id AND owner = :owner")
+    int adjustAmountByIdAndOwner(Long id, String owner, Double delta);
+
+    // Like adjustAmountByIdAndOwner, but leaves the card alone if the amount would drop below zero.
+    @Modifying
+    @Query("""
+            UPDATE cash_card SET amount = amount + :delta, version = version + 1
+            WHERE id = :id AND owner = :owner AND amount + :delta >= 0""")
+    int adjustAmountByIdAndOwnerIfNotNegative(Long id, String owner, Double delta);
+
+    // Keyset (seek) paging: the first page of an owner's cards in (amount, id) order.
+    @Query("""
+            SELECT * FROM cash_card
+            WHERE owner = :owner
+            ORDER BY amount, id
+            LIMIT :limit""")
+    List<CashCard> findKeysetPageByOwner(String owner, int limit);
+
+    // Keyset (seek) paging: the cards that come after (amount, id) in (amount, id) order. Unlike
+    // OFFSET, the database seeks straight to the position in the (owner, amount, id) index.
+    // H2 can't make an index range out of the OR, so amount >= :amount, which the OR implies, is
+    // there to start the range at :amount rather than at the owner's first card.
+    String KEYSET_PAGE_AFTER = """
+            SELECT * FROM cash_card
+            WHERE owner = :owner
+              AND amount >= :amount
+              AND (amount > :amount OR (amount = :amount AND id > :id))
+            ORDER BY amount, id
+            LIMIT :limit""";
+
+    @Query(KEYSET_PAGE_AFTER)
+    List<CashCard> findKeysetPageByOwnerAfter(String owner, Double amount, Long id, int limit);
+
+    // findKeysetPageByOwnerAfter for the cards up to maxAmount. The seek starts the range and the
+    // bound ends it, so the first page of cards from minAmount on is the one after (minAmount, 0).
+    String KEYSET_PAGE_AFTER_UP_TO = """
+            SELECT * FROM cash_card
+            WHERE owner = :owner
+              AND amount >= :amount AND amount <= :maxAmount
+              AND (amount > :amount OR (amount = :amount AND id > :id))
+            ORDER BY amount, id
+            LIMIT :limit""";
+
+    @Query(KEYSET_PAGE_AFTER_UP_TO)
+    List<CashCard> findKeysetPageByOwnerAfterUpTo(String owner, Double amount, Long id, Double maxAmount, int limit);
 }
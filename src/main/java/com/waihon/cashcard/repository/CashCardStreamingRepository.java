@@ -0,0 +1,14 @@
+package com.waihon.cashcard.repository;
+
+import com.waihon.cashcard.entity.CashCard;
+
+import java.util.function.Consumer;
+
+// Custom repository fragment for reading more cards than comfortably fit in memory.
+// Spring Data picks up the implementation from CashCardStreamingRepositoryImpl.
+public interface CashCardStreamingRepository {
+
+    // Hands every card of owner to consumer, in (amount, id) order, while the rows are still being
+    // read from a forward-only cursor. Nothing is collected in between.
+    void streamByOwner(String owner, Consumer<CashCard> consumer);
+}
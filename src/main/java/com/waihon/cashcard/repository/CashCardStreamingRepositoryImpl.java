@@ -0,0 +1,65 @@
+package com.waihon.cashcard.repository;
+
+import com.waihon.cashcard.entity.CashCard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+class CashCardStreamingRepositoryImpl implements CashCardStreamingRepository {
+
+    private static final String SELECT_BY_OWNER =
+            "SELECT id, amount, owner, version FROM cash_card WHERE owner = ? ORDER BY amount, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    CashCardStreamingRepositoryImpl(DataSource dataSource,
+                                    @Value("${cashcard.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void streamByOwner(String owner, Consumer<CashCard> consumer) {
+        jdbcTemplate.execute((Connection connection) -> {
+            // H2 materializes the whole result of a query before returning the first row unless
+            // lazy query execution is switched on for the session.
+            boolean h2 = "H2".equals(connection.getMetaData().getDatabaseProductName());
+            if (h2) {
+                setLazyQueryExecution(connection, true);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_OWNER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, owner);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new CashCard(
+                                resultSet.getLong("id"),
+                                resultSet.getDouble("amount"),
+                                resultSet.getString("owner"),
+                                resultSet.getLong("version")));
+                    }
+                }
+            } finally {
+                if (h2) {
+                    setLazyQueryExecution(connection, false);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+}
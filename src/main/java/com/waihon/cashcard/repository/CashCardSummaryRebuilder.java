@@ -0,0 +1,32 @@
+package com.waihon.cashcard.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Rebuilds cash_card_summary from cash_card once the application has started, so that a summary
+// that drifted (a restored backup, rows loaded with the trigger disabled) is repaired before it
+// is served. Turn it off with cashcard.summary.rebuild-on-startup=false.
+@Component
+@ConditionalOnProperty(name = "cashcard.summary.rebuild-on-startup", havingValue = "true", matchIfMissing = true)
+class CashCardSummaryRebuilder implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CashCardSummaryRebuilder.class);
+
+    private final CashCardRepository cashCardRepository;
+
+    CashCardSummaryRebuilder(CashCardRepository cashCardRepository) {
+        this.cashCardRepository = cashCardRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int repaired = cashCardRepository.rebuildSummaries();
+        if (repaired > 0) {
+            log.warn("Repaired the card summary of {} owner(s)", repaired);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.waihon.cashcard.repository;
+
+import com.waihon.cashcard.entity.CashCardSummary;
+
+// Custom repository fragment for the per-owner aggregates in cash_card_summary, which
+// CashCardSummaryTrigger keeps up to date on every write to cash_card.
+// Spring Data picks up the implementation from CashCardSummaryRepositoryImpl.
+public interface CashCardSummaryRepository {
+
+    // Count, total, min and max of the owner's cards, read from a single summary row.
+    CashCardSummary findSummaryByOwner(String owner);
+
+    // A counter that goes up with every change to the owner's cards, or 0 if they never had any.
+    long findChangeCountByOwner(String owner);
+
+    // Recomputes every owner's summary from cash_card, repairing any drift (for example rows
+    // written while the trigger didn't exist). Returns the number of owners whose summary changed.
+    int rebuildSummaries();
+}
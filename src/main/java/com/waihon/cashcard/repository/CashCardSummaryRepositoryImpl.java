@@ -0,0 +1,95 @@
+package com.waihon.cashcard.repository;
+
+import com.waihon.cashcard.entity.CashCardSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+class CashCardSummaryRepositoryImpl implements CashCardSummaryRepository {
+
+    private static final String SELECT_SUMMARY = """
+            SELECT owner, card_count, total, min_amount, max_amount
+            FROM cash_card_summary WHERE owner = ?""";
+    private static final String SELECT_CHANGE_COUNT =
+            "SELECT change_count FROM cash_card_summary WHERE owner = ?";
+    private static final String SELECT_OWNERS = """
+            SELECT owner FROM cash_card
+            UNION
+            SELECT owner FROM cash_card_summary""";
+    // Creates an empty summary row if there is none, and either way leaves the row locked until
+    // the end of the transaction.
+    private static final String LOCK_SUMMARY = "MERGE INTO cash_card_summary (owner) KEY (owner) VALUES (?)";
+    private static final String UPDATE_FROM_CARDS = """
+            UPDATE cash_card_summary
+            SET (card_count, total, min_amount, max_amount) = (
+                SELECT COUNT(*), COALESCE(SUM(amount), 0), MIN(amount), MAX(amount)
+                FROM cash_card WHERE owner = ?)
+            WHERE owner = ?""";
+    private static final String BUMP_CHANGE_COUNT =
+            "UPDATE cash_card_summary SET change_count = change_count + 1 WHERE owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    CashCardSummaryRepositoryImpl(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public CashCardSummary findSummaryByOwner(String owner) {
+        List<CashCardSummary> summaries = jdbcTemplate.query(SELECT_SUMMARY,
+                (resultSet, rowNum) -> mapSummary(resultSet), owner);
+        return summaries.isEmpty() ? CashCardSummary.empty(owner) : summaries.get(0);
+    }
+
+    @Override
+    public long findChangeCountByOwner(String owner) {
+        List<Long> changeCounts = jdbcTemplate.queryForList(SELECT_CHANGE_COUNT, Long.class, owner);
+        return changeCounts.isEmpty() ? 0 : changeCounts.get(0);
+    }
+
+    @Override
+    public int rebuildSummaries() {
+        int changed = 0;
+        for (String owner : jdbcTemplate.queryForList(SELECT_OWNERS, String.class)) {
+            // One short transaction per owner. Holding the summary row lock while recomputing means
+            // a concurrent write to the owner's cards has either committed before the aggregate is
+            // read, or its trigger waits and applies its change on top of the rebuilt row.
+            Boolean ownerChanged = transactionTemplate.execute(status -> {
+                jdbcTemplate.update(LOCK_SUMMARY, owner);
+                CashCardSummary before = findSummaryByOwner(owner);
+                jdbcTemplate.update(UPDATE_FROM_CARDS, owner, owner);
+                if (before.equals(findSummaryByOwner(owner))) {
+                    return false;
+                }
+                // The cards changed behind the trigger's back, so list pages cached by clients are stale.
+                jdbcTemplate.update(BUMP_CHANGE_COUNT, owner);
+                return true;
+            });
+            if (Boolean.TRUE.equals(ownerChanged)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static CashCardSummary mapSummary(ResultSet resultSet) throws SQLException {
+        return new CashCardSummary(
+                resultSet.getString("owner"),
+                resultSet.getLong("card_count"),
+                toDouble(resultSet.getBigDecimal("total")),
+                toDouble(resultSet.getBigDecimal("min_amount")),
+                toDouble(resultSet.getBigDecimal("max_amount")));
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
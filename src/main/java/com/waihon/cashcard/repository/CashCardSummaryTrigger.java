@@ -0,0 +1,213 @@
+package com.waihon.cashcard.repository;
+
+import org.h2.api.Trigger;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// H2 calls this for every row inserted into, updated in or deleted from cash_card (see schema.sql),
+// inside the transaction that made the change. It applies the change to the owner's row in
+// cash_card_summary, so the summary is never out of step with the cards, and reading it costs
+// one primary-key lookup instead of a scan over all of the owner's cards.
+//
+// Count and total are updated incrementally. Min and max only need another look at cash_card
+// when the card that held the old min or max moves away from it or is deleted; that look reads
+// the owner's cards in the order of the (owner, amount, id) index and stops at the first one.
+//
+// Every change also bumps the owner's change_count, which GET /cashcards uses as the ETag of the
+// owner's list pages. Writes that leave owner and amount as they were don't change any page, so
+// they are skipped altogether.
+//
+// Concurrent changes to the same owner queue up on the row lock of their summary row, which each
+// transaction holds until it commits.
+public class CashCardSummaryTrigger implements Trigger {
+
+    private static final String UPDATE_RUNNING_TOTALS = """
+            UPDATE cash_card_summary
+            SET card_count = card_count + ?, total = total + ?, change_count = change_count + 1
+            WHERE owner = ?""";
+    private static final String INSERT_SUMMARY = """
+            INSERT INTO cash_card_summary (owner, card_count, total, min_amount, max_amount, change_count)
+            VALUES (?, 1, ?, ?, ?, 1)""";
+    // Creates an empty summary row if there is none (another transaction may just have made one),
+    // then fills it in from the owner's cards.
+    private static final String MERGE_SUMMARY = "MERGE INTO cash_card_summary (owner) KEY (owner) VALUES (?)";
+    private static final String UPDATE_FROM_CARDS = """
+            UPDATE cash_card_summary
+            SET (card_count, total, min_amount, max_amount) = (
+                SELECT COUNT(*), COALESCE(SUM(amount), 0), MIN(amount), MAX(amount)
+                FROM cash_card WHERE owner = ?),
+                change_count = change_count + 1
+            WHERE owner = ?""";
+    private static final String SELECT_MIN_MAX =
+            "SELECT min_amount, max_amount FROM cash_card_summary WHERE owner = ?";
+    private static final String UPDATE_MIN_MAX =
+            "UPDATE cash_card_summary SET min_amount = ?, max_amount = ? WHERE owner = ?";
+    private static final String SELECT_LOWEST_AMOUNT =
+            "SELECT amount FROM cash_card WHERE owner = ? ORDER BY amount LIMIT 1";
+    private static final String SELECT_HIGHEST_AMOUNT =
+            "SELECT amount FROM cash_card WHERE owner = ? ORDER BY amount DESC LIMIT 1";
+
+    private static final String DUPLICATE_KEY = "23505";
+
+    // Positions of the columns we need in the row arrays H2 passes to fire().
+    private int amountColumn;
+    private int ownerColumn;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) throws SQLException {
+        amountColumn = -1;
+        ownerColumn = -1;
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                int index = columns.getInt("ORDINAL_POSITION") - 1;
+                switch (columns.getString("COLUMN_NAME").toUpperCase()) {
+                    case "AMOUNT" -> amountColumn = index;
+                    case "OWNER" -> ownerColumn = index;
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (amountColumn < 0 || ownerColumn < 0) {
+            throw new SQLException("Table " + tableName + " has no AMOUNT and OWNER columns");
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        String oldOwner = oldRow == null ? null : (String) oldRow[ownerColumn];
+        String newOwner = newRow == null ? null : (String) newRow[ownerColumn];
+        BigDecimal oldAmount = oldRow == null ? null : decimal(oldRow[amountColumn]);
+        BigDecimal newAmount = newRow == null ? null : decimal(newRow[amountColumn]);
+
+        if (oldRow != null && newRow != null && oldOwner.equals(newOwner)) {
+            if (oldAmount.compareTo(newAmount) != 0) {
+                apply(conn, newOwner, 0, oldAmount, newAmount);
+            }
+            return;
+        }
+        // An insert, a delete, or a card that changed hands: take it away from one owner and
+        // add it to the other.
+        if (oldRow != null) {
+            apply(conn, oldOwner, -1, oldAmount, null);
+        }
+        if (newRow != null) {
+            apply(conn, newOwner, 1, null, newAmount);
+        }
+    }
+
+    private void apply(Connection conn, String owner, int countDelta, BigDecimal oldAmount, BigDecimal newAmount)
+            throws SQLException {
+        BigDecimal totalDelta = orZero(newAmount).subtract(orZero(oldAmount));
+        if (updateRunningTotals(conn, owner, countDelta, totalDelta) == 0) {
+            if (countDelta != 1) {
+                // No summary row to update, for cards written before there was one. Make it from
+                // cash_card, which already has this change, and still count the change: a list page
+                // ETag taken before it must not match afterwards.
+                createFromCards(conn, owner);
+                return;
+            }
+            // The owner's first card. If another transaction creates the summary row first, the
+            // insert fails on the primary key and we add to that row instead.
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_SUMMARY)) {
+                insert.setString(1, owner);
+                insert.setBigDecimal(2, newAmount);
+                insert.setBigDecimal(3, newAmount);
+                insert.setBigDecimal(4, newAmount);
+                insert.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                    throw e;
+                }
+                updateRunningTotals(conn, owner, countDelta, totalDelta);
+            }
+        }
+
+        BigDecimal min;
+        BigDecimal max;
+        try (PreparedStatement select = conn.prepareStatement(SELECT_MIN_MAX)) {
+            select.setString(1, owner);
+            try (ResultSet resultSet = select.executeQuery()) {
+                resultSet.next();
+                min = resultSet.getBigDecimal(1);
+                max = resultSet.getBigDecimal(2);
+            }
+        }
+        BigDecimal newMin = min;
+        BigDecimal newMax = max;
+        if (oldAmount != null && min != null && oldAmount.compareTo(min) == 0
+                && (newAmount == null || newAmount.compareTo(oldAmount) > 0)) {
+            newMin = firstAmount(conn, SELECT_LOWEST_AMOUNT, owner);
+        } else if (newAmount != null && (min == null || newAmount.compareTo(min) < 0)) {
+            newMin = newAmount;
+        }
+        if (oldAmount != null && max != null && oldAmount.compareTo(max) == 0
+                && (newAmount == null || newAmount.compareTo(oldAmount) < 0)) {
+            newMax = firstAmount(conn, SELECT_HIGHEST_AMOUNT, owner);
+        } else if (newAmount != null && (max == null || newAmount.compareTo(max) > 0)) {
+            newMax = newAmount;
+        }
+        if (newMin != min || newMax != max) {
+            try (PreparedStatement update = conn.prepareStatement(UPDATE_MIN_MAX)) {
+                update.setBigDecimal(1, newMin);
+                update.setBigDecimal(2, newMax);
+                update.setString(3, owner);
+                update.executeUpdate();
+            }
+        }
+    }
+
+    private static void createFromCards(Connection conn, String owner) throws SQLException {
+        try (PreparedStatement merge = conn.prepareStatement(MERGE_SUMMARY)) {
+            merge.setString(1, owner);
+            merge.executeUpdate();
+        }
+        try (PreparedStatement update = conn.prepareStatement(UPDATE_FROM_CARDS)) {
+            update.setString(1, owner);
+            update.setString(2, owner);
+            update.executeUpdate();
+        }
+    }
+
+    private static int updateRunningTotals(Connection conn, String owner, int countDelta, BigDecimal totalDelta)
+            throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement(UPDATE_RUNNING_TOTALS)) {
+            update.setInt(1, countDelta);
+            update.setBigDecimal(2, totalDelta);
+            update.setString(3, owner);
+            return update.executeUpdate();
+        }
+    }
+
+    // The trigger runs after the change, so cash_card already reflects it here.
+    private static BigDecimal firstAmount(Connection conn, String sql, String owner) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(sql)) {
+            select.setString(1, owner);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    private static BigDecimal decimal(Object amount) {
+        return amount instanceof BigDecimal decimal ? decimal : new BigDecimal(amount.toString());
+    }
+
+    private static BigDecimal orZero(BigDecimal amount) {
+        return amount == null ? BigDecimal.ZERO : amount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
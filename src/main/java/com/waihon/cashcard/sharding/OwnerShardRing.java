@@ -0,0 +1,57 @@
+package com.waihon.cashcard.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Consistent hashing of owners onto shards. Every shard is placed on a ring of 64-bit hashes at
+// many points (virtual nodes), and an owner belongs to the shard of the first point at or after
+// the owner's own hash.
+//
+// Because a shard's points only depend on its index, going from N to N + 1 shards only moves the
+// owners whose hash falls just before one of the new shard's points: about 1 / (N + 1) of them,
+// and all to the new shard. Plain hash % N would move almost everyone.
+final class OwnerShardRing {
+
+    private static final int VIRTUAL_NODES = 256;
+
+    private final NavigableMap<Long, Integer> points = new TreeMap<>();
+    private final int shards;
+
+    OwnerShardRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        this.shards = shards;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                points.put(hash("shard-" + shard + "#" + node), shard);
+            }
+        }
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    int shardOf(String owner) {
+        Map.Entry<Long, Integer> point = points.ceilingEntry(hash(owner));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    // 64-bit FNV-1a, finished with the MurmurHash3 mix so that similar names spread over the ring.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,24 @@
+package com.waihon.cashcard.sharding;
+
+// The shard the current thread's database work goes to, read by ShardRoutingDataSource whenever
+// a connection is taken. Set by ShardRoutingInterceptor around repository calls.
+final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    // The current shard, or null outside of a repository call.
+    static Integer current() {
+        return SHARD.get();
+    }
+
+    static void bind(int shard) {
+        SHARD.set(shard);
+    }
+
+    static void unbind() {
+        SHARD.remove();
+    }
+}
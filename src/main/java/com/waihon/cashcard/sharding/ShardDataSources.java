@@ -0,0 +1,85 @@
+package com.waihon.cashcard.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// One connection pool per shard. Each is published as hikaricp.connections.* with the pool tag
+// cashcard-shard-<index>.
+//
+// Shard 0 is where Spring Boot runs schema.sql and data.sql, as it did for the single database.
+// The other shards are given schema.sql here, if they don't have the tables yet.
+//
+// The in-memory shards are kept open with DB_CLOSE_DELAY=-1, so that they survive the pool
+// retiring all of its connections, and are shut down when the application context closes.
+// Otherwise every context a test run starts would leave its shards behind in the JVM.
+final class ShardDataSources implements Closeable {
+
+    private final List<HikariDataSource> shards = new ArrayList<>();
+    private final boolean inMemory;
+
+    // urls may be empty, in which case every shard is a new in-memory H2 database.
+    ShardDataSources(String[] urls, int shardCount, String username, String password, MeterRegistry meterRegistry) {
+        this.inMemory = urls.length == 0;
+        int count = inMemory ? shardCount : urls.length;
+        for (int shard = 0; shard < count; shard++) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("cashcard-shard-" + shard);
+            dataSource.setJdbcUrl(inMemory
+                    ? "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+                    : urls[shard]);
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            if (meterRegistry != null) {
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            }
+            shards.add(dataSource);
+        }
+        for (int shard = 1; shard < count; shard++) {
+            if (!hasSchema(shards.get(shard))) {
+                new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(shards.get(shard));
+            }
+        }
+    }
+
+    int count() {
+        return shards.size();
+    }
+
+    DataSource get(int shard) {
+        return shards.get(shard);
+    }
+
+    List<? extends DataSource> all() {
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        for (HikariDataSource shard : shards) {
+            try {
+                // Databases at configured urls belong to someone else and are only disconnected from.
+                if (inMemory) {
+                    new JdbcTemplate(shard).execute("SHUTDOWN");
+                }
+            } finally {
+                shard.close();
+            }
+        }
+    }
+
+    private static boolean hasSchema(DataSource dataSource) {
+        Integer tables = new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE UPPER(table_name) = 'CASH_CARD'", Integer.class);
+        return tables != null && tables > 0;
+    }
+}
@@ -0,0 +1,163 @@
+package com.waihon.cashcard.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Moves owners' cards to their home shard while the application keeps serving them.
+//
+// A move from one shard to another happens inside a transaction on the source shard that first
+// locks the owner's summary row. Every write to the owner's cards goes through that row in
+// CashCardSummaryTrigger, so from then on writes on the source wait for the move, and writes that
+// were already in progress have committed. The cards are then copied to the home shard in a
+// transaction of its own, requests are sent home, and the cards are deleted from the source.
+//
+// The copy keeps ids and versions, so ETags of single cards stay valid. The change count behind
+// list page ETags is carried over and bumped, so it can't repeat a value the client has seen.
+//
+// A write that waited for the move lands on the source shard after it. ShardRoutingInterceptor
+// notices that the owner moved during the call and has the leftovers moved as well. A move cut
+// short by a crash is finished on the next start: the copy is a MERGE, so repeating it is harmless.
+//
+// The owner's card ledger moves with the cards, both what is in card_ledger and what is still in
+// card_ledger_outbox, so GET /cashcards/{id}/history on the home shard shows all of it. Entries
+// are added to the home shard's outbox in their order, and get ids from its sequence, so they come
+// before any change made there later. The move itself is not a balance change: the entries that
+// copying and deleting the cards make are dropped. A repeated move first removes what an earlier
+// attempt copied of the same cards' history, so nothing shows up twice.
+class ShardRebalancer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    // Same as in CashCardSummaryRepositoryImpl: creates the row if needed, and locks it.
+    private static final String LOCK_SUMMARY = "MERGE INTO cash_card_summary (owner) KEY (owner) VALUES (?)";
+    private static final String SELECT_CHANGE_COUNT =
+            "SELECT change_count FROM cash_card_summary WHERE owner = ?";
+    private static final String SELECT_CARDS =
+            "SELECT id, amount, owner, version FROM cash_card WHERE owner = ? FOR UPDATE";
+    private static final String COPY_CARD =
+            "MERGE INTO cash_card (id, amount, owner, version) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final String CARRY_OVER_CHANGE_COUNT =
+            "UPDATE cash_card_summary SET change_count = GREATEST(change_count, ?) + 1 WHERE owner = ?";
+    private static final String SELECT_HISTORY = """
+            SELECT id, card_id, owner, type, old_amount, new_amount, version, changed_at
+            FROM card_ledger WHERE owner = ?
+            UNION ALL
+            SELECT id, card_id, owner, type, old_amount, new_amount, version, changed_at
+            FROM card_ledger_outbox WHERE owner = ?
+            ORDER BY id""";
+    private static final String SELECT_LAST_OUTBOX_ID = "SELECT COALESCE(MAX(id), 0) FROM card_ledger_outbox";
+    private static final String DELETE_OUTBOX_AFTER = "DELETE FROM card_ledger_outbox WHERE owner = ? AND id > ?";
+    private static final String DELETE_CARD_LEDGER = "DELETE FROM card_ledger WHERE owner = ? AND card_id = ?";
+    private static final String DELETE_CARD_OUTBOX = "DELETE FROM card_ledger_outbox WHERE owner = ? AND card_id = ?";
+    private static final String COPY_HISTORY = """
+            INSERT INTO card_ledger_outbox (card_id, owner, type, old_amount, new_amount, version, changed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)""";
+    private static final String DELETE_CARDS = "DELETE FROM cash_card WHERE owner = ?";
+    private static final String DELETE_OUTBOX = "DELETE FROM card_ledger_outbox WHERE owner = ?";
+    private static final String DELETE_LEDGER = "DELETE FROM card_ledger WHERE owner = ?";
+    private static final String DELETE_SUMMARY = "DELETE FROM cash_card_summary WHERE owner = ?";
+
+    private final ShardRouter router;
+    private final ExecutorService leftovers = Executors.newSingleThreadExecutor();
+
+    ShardRebalancer(ShardRouter router) {
+        this.router = router;
+    }
+
+    // Moves every owner that isn't on their home shard. Returns the number of owners moved.
+    int rebalance() {
+        int moved = 0;
+        for (String owner : router.ownersAwayFromHome()) {
+            moveHome(owner);
+            moved++;
+        }
+        return moved;
+    }
+
+    // Moves whatever cards of owner are on other shards than the home shard, and sends requests home.
+    synchronized void moveHome(String owner) {
+        int home = router.homeShardOf(owner);
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            if (shard != home) {
+                move(owner, shard, home);
+            }
+        }
+        router.sendHome(owner);
+    }
+
+    // moveHome() for use where the caller can't wait for it, such as after a transaction completes.
+    void moveHomeLater(String owner) {
+        leftovers.execute(() -> {
+            try {
+                moveHome(owner);
+            } catch (RuntimeException e) {
+                log.error("Could not move the cards of {} to shard {}", owner, router.homeShardOf(owner), e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        leftovers.shutdown();
+    }
+
+    private void move(String owner, int from, int to) {
+        JdbcTemplate source = new JdbcTemplate(router.dataSource(from));
+        JdbcTemplate target = new JdbcTemplate(router.dataSource(to));
+        transactionOn(from).executeWithoutResult(sourceStatus -> {
+            source.update(LOCK_SUMMARY, owner);
+            long changeCount = source.queryForObject(SELECT_CHANGE_COUNT, Long.class, owner);
+            List<Object[]> cards = source.query(SELECT_CARDS, (resultSet, rowNum) -> new Object[]{
+                    resultSet.getLong("id"), resultSet.getBigDecimal("amount"),
+                    resultSet.getString("owner"), resultSet.getLong("version")}, owner);
+            // In one statement, so that an outbox row the ledger writer moves meanwhile isn't missed.
+            List<Object[]> history = source.query(SELECT_HISTORY, (resultSet, rowNum) -> new Object[]{
+                    resultSet.getLong("card_id"), resultSet.getString("owner"), resultSet.getString("type"),
+                    resultSet.getBigDecimal("old_amount"), resultSet.getBigDecimal("new_amount"),
+                    resultSet.getLong("version"), resultSet.getObject("changed_at")}, owner, owner);
+            // Even without cards, a change count means the owner has seen list page ETags from here.
+            if (!cards.isEmpty() || !history.isEmpty() || changeCount > 0) {
+                transactionOn(to).executeWithoutResult(targetStatus -> {
+                    target.update(LOCK_SUMMARY, owner);
+                    if (!cards.isEmpty()) {
+                        long lastOutboxId = target.queryForObject(SELECT_LAST_OUTBOX_ID, Long.class);
+                        target.batchUpdate(COPY_CARD, cards);
+                        target.update(DELETE_OUTBOX_AFTER, owner, lastOutboxId);
+                    }
+                    if (!history.isEmpty()) {
+                        List<Object[]> cardIds = history.stream()
+                                .map(entry -> entry[0])
+                                .distinct()
+                                .map(cardId -> new Object[]{owner, cardId})
+                                .toList();
+                        target.batchUpdate(DELETE_CARD_LEDGER, cardIds);
+                        target.batchUpdate(DELETE_CARD_OUTBOX, cardIds);
+                        target.batchUpdate(COPY_HISTORY, history);
+                    }
+                    target.update(CARRY_OVER_CHANGE_COUNT, changeCount, owner);
+                });
+                log.info("Moved {} card(s) and {} ledger entries of {} from shard {} to shard {}",
+                        cards.size(), history.size(), owner, from, to);
+            }
+            if (router.shardOf(owner) == from) {
+                router.sendHome(owner);
+            }
+            source.update(DELETE_CARDS, owner);
+            source.update(DELETE_OUTBOX, owner);
+            source.update(DELETE_LEDGER, owner);
+            source.update(DELETE_SUMMARY, owner);
+        });
+    }
+
+    private TransactionTemplate transactionOn(int shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(router.dataSource(shard)));
+    }
+}
@@ -0,0 +1,86 @@
+package com.waihon.cashcard.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Knows which shard each owner's cards are on: the owner's home shard on the OwnerShardRing, unless
+// the cards are still waiting on another shard for ShardRebalancer to move them home.
+//
+// Owners away from home are found when the application starts, by looking at the owners on every
+// shard. That is how a change in the number of shards, or a move cut short by a crash, is noticed.
+// Until their cards have been moved, requests for those owners keep going to where the cards are.
+//
+// The same startup pass makes generated ids unique across shards: shard i hands out ids i + 1,
+// i + 1 + maxShards, i + 1 + 2 * maxShards, ... above the highest id it already has. Cards keep
+// their ids when they move, and ids of different shards never collide as long as there are no
+// more than maxShards shards.
+class ShardRouter {
+
+    private static final String SELECT_OWNERS = "SELECT DISTINCT owner FROM cash_card";
+    private static final String SELECT_HIGHEST_ID = "SELECT COALESCE(MAX(id), 0) FROM cash_card";
+
+    private final ShardDataSources shards;
+    private final OwnerShardRing ring;
+    // Owners whose cards are not (only) on their home shard, and the shard requests go to meanwhile.
+    private final Map<String, Integer> awayFromHome = new ConcurrentHashMap<>();
+
+    ShardRouter(ShardDataSources shards, int maxShards) {
+        if (shards.count() > maxShards) {
+            throw new IllegalStateException(shards.count() + " shards configured, but ids are only unique for up to "
+                    + maxShards + " (cashcard.sharding.max-shards)");
+        }
+        this.shards = shards;
+        this.ring = new OwnerShardRing(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shards.get(shard));
+            alignIds(jdbcTemplate, shard, maxShards);
+            for (String owner : jdbcTemplate.queryForList(SELECT_OWNERS, String.class)) {
+                if (ring.shardOf(owner) != shard) {
+                    awayFromHome.putIfAbsent(owner, shard);
+                }
+            }
+        }
+    }
+
+    int shardCount() {
+        return shards.count();
+    }
+
+    DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    // Where the owner's cards are read from and written to right now.
+    int shardOf(String owner) {
+        Integer shard = awayFromHome.get(owner);
+        return shard != null ? shard : ring.shardOf(owner);
+    }
+
+    // Where the owner's cards belong.
+    int homeShardOf(String owner) {
+        return ring.shardOf(owner);
+    }
+
+    Set<String> ownersAwayFromHome() {
+        return Set.copyOf(awayFromHome.keySet());
+    }
+
+    // From now on, requests for owner go to the home shard.
+    void sendHome(String owner) {
+        awayFromHome.remove(owner);
+    }
+
+    private static void alignIds(JdbcTemplate jdbcTemplate, int shard, int maxShards) {
+        long highestId = jdbcTemplate.queryForObject(SELECT_HIGHEST_ID, Long.class);
+        long nextId = highestId - Math.floorMod(highestId, maxShards) + shard + 1;
+        if (nextId <= highestId) {
+            nextId += maxShards;
+        }
+        jdbcTemplate.execute("ALTER TABLE cash_card ALTER COLUMN id RESTART WITH " + nextId
+                + " SET INCREMENT BY " + maxShards);
+    }
+}
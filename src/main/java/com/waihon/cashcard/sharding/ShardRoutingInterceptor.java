@@ -0,0 +1,150 @@
+package com.waihon.cashcard.sharding;
+
+import com.waihon.cashcard.entity.CashCard;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sends every repository call to the shard of the owner it is about, taken from its
+// owner parameter or from the owners of the cards it saves or deletes.
+//
+// Inside a transaction, the first call pins the shard until the transaction completes, so the
+// calls that follow (deleteAllById in a batch, say) use the same connection even though they
+// don't name an owner. A transaction can't span owners on different shards.
+//
+// The maintenance calls in ON_EVERY_SHARD run on every shard, and their int results are added
+// up. Other calls that can't be tied to an owner fail.
+class ShardRoutingInterceptor implements MethodInterceptor {
+
+    private static final Set<String> ON_EVERY_SHARD = Set.of("rebuildSummaries", "moveOutboxToLedger", "countOutbox");
+
+    private final ShardRouter router;
+    private final ShardRebalancer rebalancer;
+    // Per repository method, the index of its owner parameter, or -1 if it has none.
+    private final Map<Method, Integer> ownerParameters = new ConcurrentHashMap<>();
+
+    ShardRoutingInterceptor(ShardRouter router, ShardRebalancer rebalancer) {
+        this.router = router;
+        this.rebalancer = rebalancer;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String owner = ownerOf(invocation);
+        Integer pinned = ShardContext.current();
+        if (owner == null) {
+            if (pinned != null) {
+                return invocation.proceed();
+            }
+            if (ON_EVERY_SHARD.contains(invocation.getMethod().getName())) {
+                return onEveryShard(invocation);
+            }
+            throw new IllegalStateException(invocation.getMethod() + " isn't scoped by owner, so it can't be sent to a shard");
+        }
+        int shard = router.shardOf(owner);
+        if (pinned != null) {
+            if (pinned != shard) {
+                throw new IllegalStateException("A transaction can't span shards " + pinned + " and " + shard);
+            }
+            return invocation.proceed();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            ShardContext.bind(shard);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ShardContext.unbind();
+                    if (router.shardOf(owner) != shard) {
+                        rebalancer.moveHomeLater(owner);
+                    }
+                }
+            });
+            return invocation.proceed();
+        }
+        MethodInvocation again = ((ProxyMethodInvocation) invocation).invocableClone();
+        Object result;
+        ShardContext.bind(shard);
+        try {
+            result = invocation.proceed();
+        } finally {
+            ShardContext.unbind();
+        }
+        if (router.shardOf(owner) != shard) {
+            // The owner was moved while we were on the old shard. Anything we wrote there has to
+            // follow, and a call that found nothing may find it on the new shard.
+            rebalancer.moveHome(owner);
+            if (invocation.getMethod().getReturnType() != void.class && foundNothing(result)) {
+                return invoke(again);
+            }
+        }
+        return result;
+    }
+
+    private Object onEveryShard(MethodInvocation invocation) throws Throwable {
+        long total = 0;
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            MethodInvocation onShard = ((ProxyMethodInvocation) invocation).invocableClone();
+            ShardContext.bind(shard);
+            try {
+                total += ((Number) onShard.proceed()).longValue();
+            } finally {
+                ShardContext.unbind();
+            }
+        }
+        return (int) total;
+    }
+
+    private String ownerOf(MethodInvocation invocation) {
+        Object[] arguments = invocation.getArguments();
+        int ownerParameter = ownerParameters.computeIfAbsent(invocation.getMethod(), ShardRoutingInterceptor::ownerParameter);
+        if (ownerParameter >= 0) {
+            return (String) arguments[ownerParameter];
+        }
+        String owner = null;
+        for (Object argument : arguments) {
+            Iterable<?> cashCards = argument instanceof Iterable<?> iterable ? iterable
+                    : argument instanceof CashCard ? List.of(argument) : List.of();
+            for (Object cashCard : cashCards) {
+                if (cashCard instanceof CashCard card) {
+                    if (owner != null && !owner.equals(card.owner())) {
+                        throw new IllegalStateException("Cards of " + owner + " and " + card.owner()
+                                + " can't be written in one call, they may be on different shards");
+                    }
+                    owner = card.owner();
+                }
+            }
+        }
+        return owner;
+    }
+
+    private static int ownerParameter(Method method) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].getName().equals("owner") && parameters[i].getType() == String.class) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean foundNothing(Object result) {
+        return result == null
+                || (result instanceof Number number && number.longValue() == 0)
+                || Boolean.FALSE.equals(result)
+                || (result instanceof Optional<?> optional && optional.isEmpty())
+                || (result instanceof Collection<?> collection && collection.isEmpty())
+                || (result instanceof Slice<?> slice && !slice.hasContent());
+    }
+}
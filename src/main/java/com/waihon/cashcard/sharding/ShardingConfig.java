@@ -0,0 +1,93 @@
+package com.waihon.cashcard.sharding;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+// Spreads the cards over several databases by owner when cashcard.sharding.enabled=true. Every
+// query is already scoped by owner, so each request only ever needs the one shard its owner is on.
+//
+// The application's DataSource routes each connection to the shard in ShardContext, which
+// ShardRoutingInterceptor sets around every CashCardRepository call. It is lazy about taking the
+// connection, so that a transaction started before the first repository call (a batch, for
+// instance) still gets its connection from the right shard.
+@Configuration
+@ConditionalOnProperty(name = "cashcard.sharding.enabled", havingValue = "true")
+class ShardingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfig.class);
+
+    @Bean(destroyMethod = "close")
+    ShardDataSources shardDataSources(@Value("${cashcard.sharding.urls:}") String[] urls,
+                                      @Value("${cashcard.sharding.shards:1}") int shards,
+                                      @Value("${spring.datasource.username:sa}") String username,
+                                      @Value("${spring.datasource.password:}") String password,
+                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ShardDataSources(urls, shards, username, password, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ShardDataSources shardDataSources) {
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardDataSources.all()));
+    }
+
+    @Bean
+    @DependsOnDatabaseInitialization
+    ShardRouter shardRouter(ShardDataSources shardDataSources,
+                            @Value("${cashcard.sharding.max-shards:64}") int maxShards) {
+        return new ShardRouter(shardDataSources, maxShards);
+    }
+
+    @Bean(destroyMethod = "close")
+    ShardRebalancer shardRebalancer(ShardRouter shardRouter) {
+        return new ShardRebalancer(shardRouter);
+    }
+
+    @Bean
+    ShardRoutingInterceptor shardRoutingInterceptor(ShardRouter shardRouter, ShardRebalancer shardRebalancer) {
+        return new ShardRoutingInterceptor(shardRouter, shardRebalancer);
+    }
+
+    // Puts ShardRoutingInterceptor in front of the repositories, the way Spring Boot adds its
+    // repository metrics.
+    @Bean
+    static BeanPostProcessor shardRoutingRepositoryPostProcessor(ObjectProvider<ShardRoutingInterceptor> interceptor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                    repositoryFactoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(interceptor.getObject())));
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Moves the cards of owners that are not on their home shard, after a change in the number of
+    // shards for instance. Requests for them are served from where their cards are until then.
+    @Bean
+    @ConditionalOnProperty(name = "cashcard.sharding.rebalance-on-startup", havingValue = "true", matchIfMissing = true)
+    ApplicationRunner shardRebalanceOnStartup(ShardRebalancer shardRebalancer) {
+        return args -> {
+            int moved = shardRebalancer.rebalance();
+            if (moved > 0) {
+                log.info("Moved {} owner(s) to their home shard", moved);
+            }
+        };
+    }
+}
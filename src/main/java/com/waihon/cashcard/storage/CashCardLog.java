@@ -0,0 +1,280 @@
+package com.waihon.cashcard.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// An append-only file of card records, written and read through a memory mapping.
+//
+// The file starts with a header (magic, format version, base sequence, highest id) followed by
+// records:
+//
+//   int length | byte type | long sequence | long id | long version | double amount |
+//   short owner length | owner (UTF-8) | int CRC32C of type..owner
+//
+// length counts everything after itself. It is written last, and together with the checksum it
+// lets recover() find where the last complete record ends after a crash in the middle of an
+// append. A PUT record is the full state of a card; a DELETE record removes it. The latest record
+// of an id wins, so every update leaves the previous record behind as garbage until the log is
+// compacted by rewriting only the live records into a new file.
+//
+// Not thread-safe: CashCardLogRepository serializes appends and compaction.
+final class CashCardLog implements Closeable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int MAGIC = 0x43434C47; // "CCLG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    // Everything of a record except the owner's bytes.
+    private static final int FIXED_RECORD_BYTES = 4 + 1 + 8 + 8 + 8 + 8 + 2 + 4;
+    private static final long INITIAL_CAPACITY = 1 << 20;
+    // A single MappedByteBuffer can't address more than this.
+    private static final long MAX_CAPACITY = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final boolean syncWrites;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long end;
+    private long baseSequence;
+    private long highestId;
+
+    // Opens or creates the log at path. Call recover() before anything else.
+    CashCardLog(Path path, boolean syncWrites) {
+        this.path = path;
+        this.syncWrites = syncWrites;
+        open();
+    }
+
+    record LogRecord(byte type, long sequence, long id, long version, double amount, String owner) {
+    }
+
+    interface RecordVisitor {
+        void visit(long offset, LogRecord record);
+    }
+
+    // Sequence of the last change before the log was last compacted. Compaction drops the DELETE
+    // records and older versions, so the sequences they carried are only known up to this bound.
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    // Highest card id at the last compaction, so that ids of deleted cards are never handed out again.
+    long highestId() {
+        return highestId;
+    }
+
+    long size() {
+        return end;
+    }
+
+    static int sizeOf(LogRecord record) {
+        return FIXED_RECORD_BYTES + record.owner().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Reads all complete records in order, and positions the log for appending right after the
+    // last of them. Anything after that, such as a record torn by a crash, is wiped.
+    void recover(RecordVisitor visitor) {
+        long offset = HEADER_BYTES;
+        while (true) {
+            LogRecord record = readChecked(offset);
+            if (record == null) {
+                break;
+            }
+            visitor.visit(offset, record);
+            offset += 4 + buffer.getInt((int) offset);
+        }
+        end = offset;
+        wipeFrom(end);
+    }
+
+    long append(LogRecord record) {
+        byte[] owner = record.owner().getBytes(StandardCharsets.UTF_8);
+        if (owner.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Owner name too long");
+        }
+        int length = FIXED_RECORD_BYTES - 4 + owner.length;
+        ensureCapacity(end + 4 + length);
+        int offset = (int) end;
+        int position = offset + 4;
+        buffer.put(position, record.type());
+        buffer.putLong(position + 1, record.sequence());
+        buffer.putLong(position + 9, record.id());
+        buffer.putLong(position + 17, record.version());
+        buffer.putDouble(position + 25, record.amount());
+        buffer.putShort(position + 33, (short) owner.length);
+        buffer.put(position + 35, owner);
+        buffer.putInt(position + 35 + owner.length, checksum(position, length - 4));
+        // Only now is the record visible to recover().
+        buffer.putInt(offset, length);
+        if (syncWrites) {
+            buffer.force(offset, 4 + length);
+        }
+        end += 4 + length;
+        return offset;
+    }
+
+    LogRecord read(long offset) {
+        int position = (int) offset + 4;
+        int ownerLength = buffer.getShort(position + 33);
+        byte[] owner = new byte[ownerLength];
+        buffer.get(position + 35, owner);
+        return new LogRecord(
+                buffer.get(position),
+                buffer.getLong(position + 1),
+                buffer.getLong(position + 9),
+                buffer.getLong(position + 17),
+                buffer.getDouble(position + 25),
+                new String(owner, StandardCharsets.UTF_8));
+    }
+
+    // Replaces the log with one holding only records, in that order. The new file is complete and
+    // on disk before it atomically takes the place of the old one, so a crash during compaction
+    // leaves either the old log or the new one. Call recover() afterwards, as after opening.
+    void rewrite(Iterable<LogRecord> records, long baseSequence, long highestId) {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            Files.deleteIfExists(compacted);
+            try (CashCardLog target = new CashCardLog(compacted, false)) {
+                target.writeHeader(baseSequence, highestId);
+                for (LogRecord record : records) {
+                    target.append(record);
+                }
+                target.buffer.force();
+            }
+            close();
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact " + path, e);
+        }
+        open();
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close " + path, e);
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            map(Math.max(INITIAL_CAPACITY, channel.size()));
+            if (created) {
+                writeHeader(0, 0);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException(path + " is not a card log of format version " + FORMAT_VERSION);
+            }
+            baseSequence = buffer.getLong(8);
+            highestId = buffer.getLong(16);
+            end = HEADER_BYTES;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path, e);
+        }
+    }
+
+    private void writeHeader(long baseSequence, long highestId) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, baseSequence);
+        buffer.putLong(16, highestId);
+        this.baseSequence = baseSequence;
+        this.highestId = highestId;
+    }
+
+    // The record at offset if it is complete and intact, otherwise null.
+    private LogRecord readChecked(long offset) {
+        if (offset + FIXED_RECORD_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt((int) offset);
+        if (length < FIXED_RECORD_BYTES - 4 || offset + 4 + length > buffer.capacity()) {
+            return null;
+        }
+        int position = (int) offset + 4;
+        byte type = buffer.get(position);
+        int ownerLength = buffer.getShort(position + 33);
+        if ((type != PUT && type != DELETE) || ownerLength != length - (FIXED_RECORD_BYTES - 4)
+                || buffer.getInt(position + length - 4) != checksum(position, length - 4)) {
+            return null;
+        }
+        return read(offset);
+    }
+
+    private int checksum(int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException(path + " is full");
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity = Math.min(capacity * 2, MAX_CAPACITY);
+        }
+        try {
+            map(capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow " + path, e);
+        }
+    }
+
+    // Mapping beyond the end of the file grows the file. The previous mapping stays valid for
+    // anyone still holding it and is released by the garbage collector.
+    private void map(long capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    // Zeroes whatever lies beyond the last complete record. Besides a torn record this can be a
+    // later record whose page reached the disk while an earlier one's didn't; left in place, it
+    // could look valid again once new records have been appended up to it. Chunks that are already
+    // zero are only read, so that a clean log isn't rewritten.
+    private void wipeFrom(long offset) {
+        byte[] zeros = new byte[4096];
+        for (long position = offset; position < buffer.capacity(); position += zeros.length) {
+            int length = (int) Math.min(zeros.length, buffer.capacity() - position);
+            if (!isZero((int) position, length)) {
+                buffer.put((int) position, zeros, 0, length);
+            }
+        }
+    }
+
+    private boolean isZero(int position, int length) {
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            if (buffer.getLong(position + i) != 0) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (buffer.get(position + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
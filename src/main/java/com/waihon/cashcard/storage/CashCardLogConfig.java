@@ -0,0 +1,102 @@
+package com.waihon.cashcard.storage;
+
+import com.waihon.cashcard.entity.CashCard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Serves CashCardRepository from a CashCardLog instead of the cash_card table when
+// cashcard.storage.engine=log. Spring Data's JDBC repository is still created, but everything that
+// injects CashCardRepository gets this one.
+//
+// Card histories stay in the database: the balance changes the log makes are written to
+// card_ledger_outbox, where CardLedgerTrigger puts those of the cash_card table, and CardLedgerWriter
+// moves them into card_ledger as usual. Unlike the trigger's, these inserts are not atomic with the
+// change itself, so a crash right after a write, or a failing insert, costs that change its entry.
+//
+// Without cashcard.storage.log.directory the log goes to a temporary directory that is deleted on
+// shutdown, which makes it as short-lived as the in-memory H2 database.
+@Configuration
+@ConditionalOnProperty(name = "cashcard.storage.engine", havingValue = "log")
+class CashCardLogConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(CashCardLogConfig.class);
+
+    private static final String INSERT_OUTBOX = """
+            INSERT INTO card_ledger_outbox (card_id, owner, type, old_amount, new_amount, version)
+            VALUES (?, ?, ?, ?, ?, ?)""";
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    CashCardLogRepository cashCardLogRepository(
+            @Value("${cashcard.storage.log.directory:}") String directory,
+            @Value("${cashcard.storage.log.sync-writes:false}") boolean syncWrites,
+            @Value("${cashcard.storage.log.compaction-min-size:16MB}") DataSize compactionMinSize,
+            @Value("${cashcard.storage.log.import-from-jdbc:true}") boolean importFromJdbc,
+            @Value("${cashcard.export.fetch-size:500}") int fetchSize,
+            JdbcTemplate jdbcTemplate) throws IOException {
+        Path logDirectory;
+        Runnable onClose;
+        if (directory.isEmpty()) {
+            Path temporary = Files.createTempDirectory("cashcard-log");
+            logDirectory = temporary;
+            onClose = () -> deleteRecursively(temporary);
+        } else {
+            logDirectory = Path.of(directory);
+            onClose = () -> {
+            };
+        }
+        CashCardLogRepository repository = new CashCardLogRepository(
+                new CashCardLog(logDirectory.resolve("cashcards.log"), syncWrites),
+                compactionMinSize.toBytes(), fetchSize, outboxLedger(jdbcTemplate), onClose);
+        if (importFromJdbc) {
+            // Start from the cards already in the database, so switching engines keeps them.
+            List<CashCard> cashCards = jdbcTemplate.query("SELECT id, amount, owner, version FROM cash_card ORDER BY id",
+                    (resultSet, rowNum) -> new CashCard(resultSet.getLong("id"), resultSet.getDouble("amount"),
+                            resultSet.getString("owner"), resultSet.getLong("version")));
+            if (repository.importIfEmpty(cashCards) && !cashCards.isEmpty()) {
+                log.info("Imported {} card(s) from cash_card into {}", cashCards.size(), logDirectory);
+            }
+        }
+        return repository;
+    }
+
+    private static CashCardLogRepository.Ledger outboxLedger(JdbcTemplate jdbcTemplate) {
+        return (cardId, owner, type, oldAmount, newAmount, version) -> {
+            try {
+                jdbcTemplate.update(INSERT_OUTBOX, cardId, owner, type, decimal(oldAmount), decimal(newAmount), version);
+            } catch (DataAccessException e) {
+                // The change itself is in the log already, so the request must not fail over its history.
+                log.warn("Could not record the change to card {} in the ledger", cardId, e);
+            }
+        };
+    }
+
+    // Amounts go in as decimals, as they do from CardLedgerTrigger, so that 10.1 stays 10.1.
+    private static BigDecimal decimal(Double amount) {
+        return amount == null ? null : BigDecimal.valueOf(amount);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
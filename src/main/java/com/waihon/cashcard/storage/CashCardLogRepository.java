@@ -0,0 +1,777 @@
+package com.waihon.cashcard.storage;
+
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.entity.CashCardSummary;
+import com.waihon.cashcard.repository.CashCardRepository;
+import com.waihon.cashcard.storage.CashCardLog.LogRecord;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// CashCardRepository on a memory-mapped, append-only CashCardLog instead of SQL, selected with
+// cashcard.storage.engine=log (see CashCardLogConfig).
+//
+// Every write appends one record and updates two indexes:
+// - by id, off the heap (OffHeapIdIndex): the offset of the card's latest record
+// - by owner, on the heap: the owner's cards ordered by (amount, id), which is what list pages,
+//   keyset pages and the export read, plus the running aggregates behind GET /cashcards/summary
+// Reads go through the indexes to the mapped file; nothing but the indexes is kept in memory.
+// Each balance change is also handed to a Ledger, which keeps the card histories (see
+// CashCardLogConfig).
+//
+// Neither index is stored. On startup both are rebuilt by replaying the log, which also finds
+// the end of the last complete record after a crash. When superseded and deleted records make up
+// more than half of a log that has grown past compactionThreshold bytes, the live records are
+// rewritten into a new log and the indexes rebuilt from it.
+//
+// Amounts are added up as decimals, like the NUMBER column does in H2, so that 123.45 + 10.00 is
+// 133.45 and not 133.45000000000002.
+//
+// A read-write lock makes every method atomic and lets reads run in parallel. Methods that take
+// several cards (saveAll, deleteAllById, ...) check all of them before writing any, so they either
+// apply completely or not at all. There is no transaction spanning several calls, though, so
+// POST /cashcards/batch is only all-or-nothing per kind of operation with this engine.
+class CashCardLogRepository implements CashCardRepository, Closeable {
+
+    private static final Comparator<CashCard> BY_AMOUNT_AND_ID =
+            Comparator.comparing(CashCard::amount).thenComparing(CashCard::id);
+
+    private final CashCardLog log;
+    private final long compactionThreshold;
+    private final int fetchSize;
+    private final Ledger ledger;
+    private final Runnable onClose;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final OffHeapIdIndex ids = new OffHeapIdIndex(1024);
+    private final Map<String, OwnerCards> owners = new HashMap<>();
+    private long sequence;
+    private long highestId;
+    private long liveBytes;
+    private long garbageBytes;
+    // The highest change count of an owner whose last card is gone, and who has been dropped from
+    // owners, or of any owner before the last compaction.
+    private long droppedChangeCount;
+
+    CashCardLogRepository(CashCardLog log, long compactionThreshold, int fetchSize, Ledger ledger,
+                          Runnable onClose) {
+        this.log = log;
+        this.compactionThreshold = compactionThreshold;
+        this.fetchSize = fetchSize;
+        this.ledger = ledger;
+        this.onClose = onClose;
+        lock.writeLock().lock();
+        try {
+            rebuildIndexes();
+            compactIfWorthIt();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds cards from another store (keeping their ids and versions) if this log is still empty.
+    // Returns whether they were added.
+    boolean importIfEmpty(Iterable<CashCard> cashCards) {
+        lock.writeLock().lock();
+        try {
+            if (ids.size() > 0 || sequence > 0) {
+                return false;
+            }
+            for (CashCard cashCard : cashCards) {
+                validate(cashCard);
+                long version = cashCard.version() == null ? 0 : cashCard.version();
+                // Their history is already in the ledger of the store they come from.
+                write(CashCardLog.PUT, cashCard.id(), version, cashCard.amount(), cashCard.owner());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // CrudRepository
+
+    @Override
+    public <S extends CashCard> S save(S entity) {
+        return saveAll(List.of(entity)).iterator().next();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends CashCard> Iterable<S> saveAll(Iterable<S> entities) {
+        lock.writeLock().lock();
+        try {
+            // Check everything first, so that a conflict leaves all cards as they were.
+            Set<Long> seen = new HashSet<>();
+            for (CashCard cashCard : entities) {
+                validate(cashCard);
+                if (cashCard.id() != null && !seen.add(cashCard.id())) {
+                    throw new DataIntegrityViolationException("Card " + cashCard.id() + " is saved twice");
+                }
+                if (cashCard.version() == null) {
+                    // Like Spring Data with @Version: no version means a new card.
+                    if (cashCard.id() != null && ids.get(cashCard.id()) >= 0) {
+                        throw new DuplicateKeyException("Card " + cashCard.id() + " already exists");
+                    }
+                } else {
+                    LogRecord current = current(cashCard.id());
+                    if (current == null || current.version() != cashCard.version()) {
+                        throw new OptimisticLockingFailureException("Card " + cashCard.id()
+                                + " is not at version " + cashCard.version());
+                    }
+                }
+            }
+            List<S> saved = new ArrayList<>();
+            for (CashCard cashCard : entities) {
+                long id = cashCard.id() != null ? cashCard.id() : highestId + 1;
+                long version = cashCard.version() == null ? 0 : cashCard.version() + 1;
+                append(CashCardLog.PUT, id, version, cashCard.amount(), cashCard.owner());
+                saved.add((S) new CashCard(id, cashCard.amount(), cashCard.owner(), version));
+            }
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<CashCard> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(toCashCard(current(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        lock.readLock().lock();
+        try {
+            return ids.get(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterable<CashCard> findAll() {
+        return findAll(Sort.by("id"));
+    }
+
+    @Override
+    public Iterable<CashCard> findAllById(Iterable<Long> ids) {
+        lock.readLock().lock();
+        try {
+            List<CashCard> cashCards = new ArrayList<>();
+            for (Long id : ids) {
+                LogRecord record = current(id);
+                if (record != null) {
+                    cashCards.add(toCashCard(record));
+                }
+            }
+            return cashCards;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        deleteAllById(List.of(id));
+    }
+
+    @Override
+    public void delete(CashCard entity) {
+        deleteAll(List.of(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                LogRecord current = current(id);
+                if (current != null) {
+                    append(CashCardLog.DELETE, id, current.version(), current.amount(), current.owner());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends CashCard> entities) {
+        lock.writeLock().lock();
+        try {
+            // As with @Version in Spring Data, deleting a stale copy of a card fails.
+            for (CashCard cashCard : entities) {
+                LogRecord current = current(cashCard.id());
+                if (cashCard.version() != null && (current == null || current.version() != cashCard.version())) {
+                    throw new OptimisticLockingFailureException("Card " + cashCard.id()
+                            + " is not at version " + cashCard.version());
+                }
+            }
+            List<Long> deletes = new ArrayList<>();
+            entities.forEach(cashCard -> deletes.add(cashCard.id()));
+            deleteAllById(deletes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            List<Long> all = new ArrayList<>();
+            ids.forEach((id, offset) -> all.add(id));
+            deleteAllById(all);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // PagingAndSortingRepository
+
+    @Override
+    public Iterable<CashCard> findAll(Sort sort) {
+        lock.readLock().lock();
+        try {
+            List<CashCard> cashCards = new ArrayList<>(ids.size());
+            ids.forEach((id, offset) -> cashCards.add(toCashCard(log.read(offset))));
+            cashCards.sort(comparator(sort, Comparator.comparing(CashCard::id)));
+            return cashCards;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<CashCard> findAll(Pageable pageable) {
+        List<CashCard> cashCards = (List<CashCard>) findAll(pageable.getSort());
+        return page(cashCards, pageable);
+    }
+
+    // Owner-scoped reads
+
+    @Override
+    public CashCard findByIdAndOwner(Long id, String owner) {
+        lock.readLock().lock();
+        try {
+            LogRecord record = current(id);
+            return record != null && record.owner().equals(owner) ? toCashCard(record) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<CashCard> findByOwner(String owner, PageRequest pageRequest) {
+        lock.readLock().lock();
+        try {
+            OwnerCards cards = owners.get(owner);
+            return ownerPage(cards != null ? cards.byAmount : Collections.emptyNavigableSet(), pageRequest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<CashCard> findByOwnerAndAmountBetween(String owner, Double minAmount, Double maxAmount,
+                                                      PageRequest pageRequest) {
+        lock.readLock().lock();
+        try {
+            OwnerCards cards = owners.get(owner);
+            if (cards == null || minAmount > maxAmount) {
+                return ownerPage(Collections.emptyNavigableSet(), pageRequest);
+            }
+            return ownerPage(cards.byAmount.subSet(new CardKey(minAmount, Long.MIN_VALUE), true,
+                    new CardKey(maxAmount, Long.MAX_VALUE), true), pageRequest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsByIdAndOwner(Long id, String owner) {
+        return findByIdAndOwner(id, owner) != null;
+    }
+
+    @Override
+    public List<CashCard> findByOwnerAndIdIn(String owner, Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            List<CashCard> cashCards = new ArrayList<>();
+            for (Long id : ids) {
+                LogRecord record = current(id);
+                if (record != null && record.owner().equals(owner)) {
+                    cashCards.add(toCashCard(record));
+                }
+            }
+            return cashCards;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CashCard> findKeysetPageByOwner(String owner, int limit) {
+        lock.readLock().lock();
+        try {
+            return ownerCards(owner, null, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CashCard> findKeysetPageByOwnerAfter(String owner, Double amount, Long id, int limit) {
+        lock.readLock().lock();
+        try {
+            return ownerCards(owner, new CardKey(amount, id), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CashCard> findKeysetPageByOwnerAfterUpTo(String owner, Double amount, Long id, Double maxAmount,
+                                                         int limit) {
+        lock.readLock().lock();
+        try {
+            return ownerCards(owner, new CardKey(amount, id), maxAmount, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamByOwner(String owner, Consumer<CashCard> consumer) {
+        // Hand the cards over in chunks, with the lock released in between, so a slow client
+        // doesn't hold up writers for the whole export.
+        CardKey after = null;
+        while (true) {
+            List<CashCard> chunk;
+            lock.readLock().lock();
+            try {
+                chunk = ownerCards(owner, after, fetchSize);
+            } finally {
+                lock.readLock().unlock();
+            }
+            chunk.forEach(consumer);
+            if (chunk.size() < fetchSize) {
+                return;
+            }
+            CashCard last = chunk.get(chunk.size() - 1);
+            after = new CardKey(last.amount(), last.id());
+        }
+    }
+
+    // Owner-scoped writes. Like their SQL counterparts, they return the number of cards written.
+
+    @Override
+    public int updateAmountByIdAndOwner(Long id, String owner, Double amount) {
+        return writeOwned(id, owner, null, current -> amount);
+    }
+
+    @Override
+    public int deleteByIdAndOwner(Long id, String owner) {
+        return deleteOwned(id, owner, null);
+    }
+
+    @Override
+    public int updateAmountByIdAndOwnerAndVersionIn(Long id, String owner, Double amount, Collection<Long> versions) {
+        return writeOwned(id, owner, versions, current -> amount);
+    }
+
+    @Override
+    public int deleteByIdAndOwnerAndVersionIn(Long id, String owner, Collection<Long> versions) {
+        return deleteOwned(id, owner, versions);
+    }
+
+    @Override
+    public int adjustAmountByIdAndOwner(Long id, String owner, Double delta) {
+        return writeOwned(id, owner, null, current -> add(current, delta));
+    }
+
+    @Override
+    public int adjustAmountByIdAndOwnerIfNotNegative(Long id, String owner, Double delta) {
+        return writeOwned(id, owner, null, current -> {
+            double adjusted = add(current, delta);
+            return adjusted >= 0 ? adjusted : null;
+        });
+    }
+
+    // Summaries
+
+    @Override
+    public CashCardSummary findSummaryByOwner(String owner) {
+        lock.readLock().lock();
+        try {
+            OwnerCards cards = owners.get(owner);
+            if (cards == null || cards.byAmount.isEmpty()) {
+                return CashCardSummary.empty(owner);
+            }
+            return new CashCardSummary(owner, cards.byAmount.size(), cards.total.doubleValue(),
+                    cards.byAmount.first().amount(), cards.byAmount.last().amount());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long findChangeCountByOwner(String owner) {
+        lock.readLock().lock();
+        try {
+            OwnerCards cards = owners.get(owner);
+            // An owner without cards may have had some before the last compaction, or until their
+            // last card was deleted, so this must not go back below either.
+            return cards != null ? cards.changeCount : droppedChangeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int rebuildSummaries() {
+        lock.writeLock().lock();
+        try {
+            int changed = 0;
+            for (OwnerCards cards : owners.values()) {
+                BigDecimal total = BigDecimal.ZERO;
+                for (CardKey key : cards.byAmount) {
+                    total = total.add(BigDecimal.valueOf(key.amount()));
+                }
+                if (total.compareTo(cards.total) != 0) {
+                    cards.total = total;
+                    changed++;
+                }
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            log.close();
+            onClose.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Applies a new amount, computed from the current one, to the owner's card. A null amount, or
+    // a version that isn't in versions, leaves the card alone.
+    private int writeOwned(Long id, String owner, Collection<Long> versions,
+                           Function<Double, Double> newAmount) {
+        lock.writeLock().lock();
+        try {
+            LogRecord current = current(id);
+            if (current == null || !current.owner().equals(owner)
+                    || (versions != null && !versions.contains(current.version()))) {
+                return 0;
+            }
+            Double amount = newAmount.apply(current.amount());
+            if (amount == null) {
+                return 0;
+            }
+            append(CashCardLog.PUT, id, current.version() + 1, amount, owner);
+            return 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int deleteOwned(Long id, String owner, Collection<Long> versions) {
+        lock.writeLock().lock();
+        try {
+            LogRecord current = current(id);
+            if (current == null || !current.owner().equals(owner)
+                    || (versions != null && !versions.contains(current.version()))) {
+                return 0;
+            }
+            append(CashCardLog.DELETE, id, current.version(), current.amount(), owner);
+            return 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte type, long id, long version, double amount, String owner) {
+        LogRecord previous = current(id);
+        LogRecord record = write(type, id, version, amount, owner);
+        recordInLedger(previous, record);
+    }
+
+    private LogRecord write(byte type, long id, long version, double amount, String owner) {
+        LogRecord record = new LogRecord(type, sequence + 1, id, version, amount, owner);
+        long offset = log.append(record);
+        apply(offset, record);
+        compactIfWorthIt();
+        return record;
+    }
+
+    // The balance change a record makes, in the shape CardLedgerTrigger gives the changes to the
+    // cash_card table: writes that leave the amount as it was are no change.
+    private void recordInLedger(LogRecord previous, LogRecord record) {
+        if (record.type() == CashCardLog.DELETE) {
+            ledger.record(record.id(), record.owner(), "deleted", record.amount(), null, record.version());
+        } else if (previous == null) {
+            ledger.record(record.id(), record.owner(), "created", null, record.amount(), record.version());
+        } else if (!previous.owner().equals(record.owner())) {
+            ledger.record(previous.id(), previous.owner(), "deleted", previous.amount(), null, previous.version());
+            ledger.record(record.id(), record.owner(), "created", null, record.amount(), record.version());
+        } else if (previous.amount() != record.amount()) {
+            ledger.record(record.id(), record.owner(), "updated", previous.amount(), record.amount(), record.version());
+        }
+    }
+
+    // Brings the indexes up to date with a record, whether it was just appended or is being
+    // replayed on startup.
+    private void apply(long offset, LogRecord record) {
+        sequence = Math.max(sequence, record.sequence());
+        highestId = Math.max(highestId, record.id());
+        long previousOffset = ids.get(record.id());
+        LogRecord previous = previousOffset < 0 ? null : log.read(previousOffset);
+        if (previous != null) {
+            int size = CashCardLog.sizeOf(previous);
+            liveBytes -= size;
+            garbageBytes += size;
+            OwnerCards cards = owners.get(previous.owner());
+            cards.byAmount.remove(new CardKey(previous.amount(), previous.id()));
+            cards.total = cards.total.subtract(BigDecimal.valueOf(previous.amount()));
+        }
+        if (record.type() == CashCardLog.PUT) {
+            ids.put(record.id(), offset);
+            liveBytes += CashCardLog.sizeOf(record);
+            OwnerCards cards = owners.computeIfAbsent(record.owner(), owner -> new OwnerCards(log.baseSequence()));
+            cards.byAmount.add(new CardKey(record.amount(), record.id()));
+            cards.total = cards.total.add(BigDecimal.valueOf(record.amount()));
+        } else {
+            ids.remove(record.id());
+            // A DELETE record has to stay until the next compaction to hide the card's older records.
+            garbageBytes += CashCardLog.sizeOf(record);
+        }
+        // Like CashCardSummaryTrigger, only count changes that can change what a list page shows.
+        boolean changed = previous == null || record.type() == CashCardLog.DELETE
+                || !previous.owner().equals(record.owner()) || previous.amount() != record.amount();
+        if (changed) {
+            if (previous != null) {
+                owners.get(previous.owner()).touch(record.sequence());
+            }
+            if (record.type() == CashCardLog.PUT) {
+                owners.get(record.owner()).touch(record.sequence());
+            }
+        }
+        // Forget owners who have no cards left, so that owners only grows with the owners of cards.
+        if (previous != null && owners.get(previous.owner()).byAmount.isEmpty()) {
+            droppedChangeCount = Math.max(droppedChangeCount, owners.remove(previous.owner()).changeCount);
+        }
+    }
+
+    private void rebuildIndexes() {
+        ids.clear();
+        owners.clear();
+        sequence = log.baseSequence();
+        droppedChangeCount = log.baseSequence();
+        highestId = log.highestId();
+        liveBytes = 0;
+        garbageBytes = 0;
+        log.recover(this::apply);
+    }
+
+    private void compactIfWorthIt() {
+        if (liveBytes + garbageBytes < compactionThreshold || garbageBytes < liveBytes) {
+            return;
+        }
+        List<Long> offsets = new ArrayList<>(ids.size());
+        ids.forEach((id, offset) -> offsets.add(offset));
+        // Keep the records in log order, which is also the order of their sequence numbers.
+        offsets.sort(null);
+        List<LogRecord> live = new ArrayList<>(offsets.size());
+        for (long offset : offsets) {
+            live.add(log.read(offset));
+        }
+        log.rewrite(live, sequence, highestId);
+        rebuildIndexes();
+    }
+
+    private LogRecord current(Long id) {
+        if (id == null) {
+            return null;
+        }
+        long offset = ids.get(id);
+        return offset < 0 ? null : log.read(offset);
+    }
+
+    // Up to limit of the owner's cards in (amount, id) order, after the given position if there is one.
+    private List<CashCard> ownerCards(String owner, CardKey after, int limit) {
+        return ownerCards(owner, after, Double.POSITIVE_INFINITY, limit);
+    }
+
+    // The same, stopping at the first card above maxAmount.
+    private List<CashCard> ownerCards(String owner, CardKey after, double maxAmount, int limit) {
+        OwnerCards cards = owners.get(owner);
+        List<CashCard> cashCards = new ArrayList<>();
+        if (cards == null) {
+            return cashCards;
+        }
+        NavigableSet<CardKey> keys = after == null ? cards.byAmount : cards.byAmount.tailSet(after, false);
+        for (CardKey key : keys) {
+            if (cashCards.size() == limit || key.amount() > maxAmount) {
+                break;
+            }
+            cashCards.add(toCashCard(log.read(ids.get(key.id()))));
+        }
+        return cashCards;
+    }
+
+    // One OFFSET page of the cards with the given keys. In the (amount, id) order the keys are kept
+    // in, the page is found by walking the keys, and only its own cards are read from the log.
+    // Any other order has to read and sort all of them.
+    private Page<CashCard> ownerPage(NavigableSet<CardKey> keys, Pageable pageable) {
+        if (!isAmountOrder(pageable.getSort())) {
+            List<CashCard> cashCards = new ArrayList<>(keys.size());
+            for (CardKey key : keys) {
+                cashCards.add(toCashCard(log.read(ids.get(key.id()))));
+            }
+            cashCards.sort(comparator(pageable.getSort(), BY_AMOUNT_AND_ID));
+            return page(cashCards, pageable);
+        }
+        List<CashCard> cashCards = new ArrayList<>(pageable.getPageSize());
+        Iterator<CardKey> iterator = keys.iterator();
+        for (long skipped = 0; skipped < pageable.getOffset() && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (cashCards.size() < pageable.getPageSize() && iterator.hasNext()) {
+            cashCards.add(toCashCard(log.read(ids.get(iterator.next().id()))));
+        }
+        // Counting a range of keys walks it, but still reads nothing from the log.
+        return new PageImpl<>(cashCards, pageable, keys.size());
+    }
+
+    // Whether sort is no order at all, amount, or amount then id, all ascending.
+    private static boolean isAmountOrder(Sort sort) {
+        List<String> properties = List.of("amount", "id");
+        int index = 0;
+        for (Sort.Order order : sort) {
+            if (index == properties.size() || order.isDescending()
+                    || !order.getProperty().equals(properties.get(index++))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void validate(CashCard cashCard) {
+        if (cashCard.amount() == null || cashCard.owner() == null) {
+            throw new DataIntegrityViolationException("A card needs an amount and an owner");
+        }
+    }
+
+    private static CashCard toCashCard(LogRecord record) {
+        return record == null ? null
+                : new CashCard(record.id(), record.amount(), record.owner(), record.version());
+    }
+
+    private static double add(double amount, double delta) {
+        return BigDecimal.valueOf(amount).add(BigDecimal.valueOf(delta)).doubleValue();
+    }
+
+    private static Page<CashCard> page(List<CashCard> cashCards, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(cashCards);
+        }
+        int from = (int) Math.min(pageable.getOffset(), cashCards.size());
+        int to = Math.min(from + pageable.getPageSize(), cashCards.size());
+        return new PageImpl<>(new ArrayList<>(cashCards.subList(from, to)), pageable, cashCards.size());
+    }
+
+    // Sorting by the properties a Sort can name on CashCard, falling back to fallback for ties.
+    private static Comparator<CashCard> comparator(Sort sort, Comparator<CashCard> fallback) {
+        Comparator<CashCard> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<CashCard> byProperty = switch (order.getProperty()) {
+                case "id" -> Comparator.comparing(CashCard::id);
+                case "amount" -> Comparator.comparing(CashCard::amount);
+                case "owner" -> Comparator.comparing(CashCard::owner);
+                default -> throw new IllegalArgumentException("Cannot sort cards by " + order.getProperty());
+            };
+            if (order.isDescending()) {
+                byProperty = byProperty.reversed();
+            }
+            comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+        }
+        return comparator == null ? fallback : comparator.thenComparing(fallback);
+    }
+
+    // Where the balance changes made through this repository go, for GET /cashcards/{id}/history.
+    // Called with the write lock held, so in the order of the changes.
+    interface Ledger {
+        void record(long cardId, String owner, String type, Double oldAmount, Double newAmount, long version);
+    }
+
+    private record CardKey(double amount, long id) implements Comparable<CardKey> {
+        @Override
+        public int compareTo(CardKey other) {
+            int byAmount = Double.compare(amount, other.amount);
+            return byAmount != 0 ? byAmount : Long.compare(id, other.id);
+        }
+    }
+
+    private static final class OwnerCards {
+        private final NavigableSet<CardKey> byAmount = new TreeSet<>();
+        private BigDecimal total = BigDecimal.ZERO;
+        // The sequence of the last change to the owner's cards: the list page ETag.
+        private long changeCount;
+
+        private OwnerCards(long baseSequence) {
+            this.changeCount = baseSequence;
+        }
+
+        private void touch(long sequence) {
+            changeCount = Math.max(changeCount, sequence);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.waihon.cashcard.storage;
+
+import java.nio.ByteBuffer;
+
+// Hash table from card id to the offset of the card's latest record in the log. The slots live in
+// a direct ByteBuffer, so an index of millions of cards is one allocation outside the heap rather
+// than millions of boxed entries the garbage collector has to trace.
+//
+// Open addressing with linear probing. Offset 0 is the log header, never a record, so it marks an
+// empty slot. Removal shifts the following entries back instead of leaving tombstones.
+//
+// Not thread-safe: CashCardLogRepository only uses it under its lock.
+final class OffHeapIdIndex {
+
+    private static final int SLOT_BYTES = 16;
+    private static final long EMPTY = 0;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    OffHeapIdIndex(int expectedSize) {
+        int slotCount = 16;
+        while (slotCount < expectedSize * 2L) {
+            slotCount <<= 1;
+        }
+        allocate(slotCount);
+    }
+
+    // The offset stored for id, or -1 if there is none.
+    long get(long id) {
+        for (int slot = home(id); ; slot = (slot + 1) & mask) {
+            long offset = offsetAt(slot);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (idAt(slot) == id) {
+                return offset;
+            }
+        }
+    }
+
+    void put(long id, long offset) {
+        if ((size + 1) * 2L > mask + 1L) {
+            resize();
+        }
+        for (int slot = home(id); ; slot = (slot + 1) & mask) {
+            if (offsetAt(slot) == EMPTY) {
+                set(slot, id, offset);
+                size++;
+                return;
+            }
+            if (idAt(slot) == id) {
+                set(slot, id, offset);
+                return;
+            }
+        }
+    }
+
+    void remove(long id) {
+        int hole = home(id);
+        while (true) {
+            long offset = offsetAt(hole);
+            if (offset == EMPTY) {
+                return;
+            }
+            if (idAt(hole) == id) {
+                break;
+            }
+            hole = (hole + 1) & mask;
+        }
+        // Move back every following entry of the same cluster that would no longer be found once
+        // the hole is empty, i.e. whose home slot isn't between the hole and where it sits now.
+        for (int slot = (hole + 1) & mask; offsetAt(slot) != EMPTY; slot = (slot + 1) & mask) {
+            int home = home(idAt(slot));
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                set(hole, idAt(slot), offsetAt(slot));
+                hole = slot;
+            }
+        }
+        set(hole, 0, EMPTY);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long offset = offsetAt(slot);
+            if (offset != EMPTY) {
+                visitor.visit(idAt(slot), offset);
+            }
+        }
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    interface Visitor {
+        void visit(long id, long offset);
+    }
+
+    private void resize() {
+        ByteBuffer old = slots;
+        int oldSlots = mask + 1;
+        allocate(oldSlots * 2);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long offset = old.getLong(slot * SLOT_BYTES + 8);
+            if (offset != EMPTY) {
+                put(old.getLong(slot * SLOT_BYTES), offset);
+            }
+        }
+    }
+
+    private void allocate(int slotCount) {
+        slots = ByteBuffer.allocateDirect(slotCount * SLOT_BYTES);
+        mask = slotCount - 1;
+        size = 0;
+    }
+
+    private int home(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private long idAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES);
+    }
+
+    private long offsetAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES + 8);
+    }
+
+    private void set(int slot, long id, long offset) {
+        slots.putLong(slot * SLOT_BYTES, id);
+        slots.putLong(slot * SLOT_BYTES + 8, offset);
+    }
+}
@@ -1,6 +1,65 @@
 CREATE TABLE cash_card
 (
-    ID     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    AMOUNT NUMBER NOT NULL DEFAULT 0,
-    OWNER  VARCHAR(256) NOT NULL
+    ID      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    AMOUNT  NUMBER NOT NULL DEFAULT 0,
+    OWNER   VARCHAR(256) NOT NULL,
+    -- Bumped by every write, and sent to clients as the card's ETag.
+    VERSION BIGINT NOT NULL DEFAULT 0
 );
+
+-- Every query is scoped by OWNER and the default sort is by AMOUNT, so this index lets both
+-- OFFSET and keyset (seek) paging read an owner's cards in order without a table scan. It also
+-- serves the minAmount/maxAmount filters of GET /cashcards, which read a range of it.
+CREATE INDEX cash_card_owner_amount_id ON cash_card (OWNER, AMOUNT, ID);
+
+-- Running count, total, min and max of each owner's cards, for GET /cashcards/summary. The
+-- trigger below keeps it up to date in the same transaction as every insert, update and delete
+-- on cash_card, whichever code path made the change. CHANGE_COUNT goes up with every change to
+-- the owner's cards and is the ETag of their list pages.
+CREATE TABLE cash_card_summary
+(
+    OWNER        VARCHAR(256) PRIMARY KEY,
+    CARD_COUNT   BIGINT NOT NULL DEFAULT 0,
+    TOTAL        NUMBER NOT NULL DEFAULT 0,
+    MIN_AMOUNT   NUMBER,
+    MAX_AMOUNT   NUMBER,
+    CHANGE_COUNT BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TRIGGER cash_card_summary_trigger AFTER INSERT, UPDATE, DELETE ON cash_card
+    FOR EACH ROW CALL 'com.waihon.cashcard.repository.CashCardSummaryTrigger';
+
+-- One row per change to a card's amount, for GET /cashcards/{id}/history. The trigger below only
+-- writes the change to card_ledger_outbox, in the transaction that made it, so that the change is
+-- on record as soon as it commits without making every write pay for the ledger's index.
+-- CardLedgerWriter moves outbox rows into card_ledger in batches, in the background, keeping the
+-- outbox id: ids go up with each change to a card, which is the order of its history.
+CREATE TABLE card_ledger_outbox
+(
+    ID         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    CARD_ID    BIGINT NOT NULL,
+    OWNER      VARCHAR(256) NOT NULL,
+    TYPE       VARCHAR(16) NOT NULL,
+    OLD_AMOUNT NUMBER,
+    NEW_AMOUNT NUMBER,
+    VERSION    BIGINT NOT NULL,
+    CHANGED_AT TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE card_ledger
+(
+    ID         BIGINT PRIMARY KEY,
+    CARD_ID    BIGINT NOT NULL,
+    OWNER      VARCHAR(256) NOT NULL,
+    TYPE       VARCHAR(16) NOT NULL,
+    OLD_AMOUNT NUMBER,
+    NEW_AMOUNT NUMBER,
+    VERSION    BIGINT NOT NULL,
+    CHANGED_AT TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- A card's history is read owner-scoped and in id order, with keyset paging on the id.
+CREATE INDEX card_ledger_owner_card_id ON card_ledger (OWNER, CARD_ID, ID);
+
+CREATE TRIGGER card_ledger_trigger AFTER INSERT, UPDATE, DELETE ON cash_card
+    FOR EACH ROW CALL 'com.waihon.cashcard.repository.CardLedgerTrigger';
@@ -0,0 +1,65 @@
+package com.waihon.cashcard;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// Many clients topping up the same card at the same time must not lose any of the updates.
+// Here each adjustment is its own UPDATE; CashCardCoalescedAdjustConcurrencyTests merges them.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CashCardAdjustConcurrencyTests {
+
+	static final int THREADS = 64;
+	static final int ADJUSTMENTS_PER_THREAD = 10;
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Test
+	@DirtiesContext
+	void shouldNotLoseAnyAdjustmentsWhenManyThreadsHitOneCard() throws Exception {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+		// Release all the threads at once to make them collide on the card as much as possible.
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				results.add(clients.submit(() -> {
+					start.await();
+					for (int i = 0; i < ADJUSTMENTS_PER_THREAD; i++) {
+						ResponseEntity<Void> response = sarah.postForEntity("/cashcards/99/adjust",
+								new CashCardApplicationTests.CashCardAdjustmentRequest(1.00, false), Void.class);
+						assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+
+		ResponseEntity<String> getResponse = sarah.getForEntity("/cashcards/99", String.class);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isCloseTo(123.45 + THREADS * ADJUSTMENTS_PER_THREAD, within(0.001));
+	}
+}
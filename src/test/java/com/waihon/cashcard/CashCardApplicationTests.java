@@ -1,5 +1,7 @@
 package com.waihon.cashcard;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.waihon.cashcard.entity.CashCard;
@@ -9,12 +11,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -24,6 +30,8 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 //@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 class CashCardApplicationTests {
 
+	static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
 	// Ask Spring to inject a test helper that'll allow us to make HTTP requests to the
 	// locally running application.
 	@Autowired
@@ -151,6 +159,204 @@ class CashCardApplicationTests {
 		assertThat(amounts).asList().containsExactly(1.00, 123.45, 150.0);
 	}
 
+	@Test
+	void shouldWalkThroughKeysetPagesOfCashCards() {
+		// An empty after= starts a keyset scan from the beginning.
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?after=&size=2", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray amounts = documentContext.read("$..amount");
+		assertThat(amounts).asList().containsExactly(1.00, 123.45);
+
+		// The Link header points at the next page.
+		URI next = URI.create(response.getHeaders().getFirst(HttpHeaders.LINK).replaceAll("^<(.*)>; rel=\"next\"$", "$1"));
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(next, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		documentContext = JsonPath.parse(response.getBody());
+		amounts = documentContext.read("$..amount");
+		assertThat(amounts).asList().containsExactly(150.0);
+		assertThat(response.getHeaders().containsKey(HttpHeaders.LINK)).isFalse();
+	}
+
+	@Test
+	void shouldRejectAMalformedKeysetCursor() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?after=not*a*cursor", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void shouldOnlyListCashCardsWithAmountsInTheRequestedRange() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?minAmount=100&maxAmount=150", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		JSONArray amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(123.45, 150.0);
+
+		// Either end of the range may be left open, and sorting and paging apply to the filtered cards.
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?minAmount=1&page=0&size=1&sort=amount,desc", String.class);
+		amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(150.0);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?maxAmount=123.45", String.class);
+		amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(1.00, 123.45);
+	}
+
+	@Test
+	void shouldWalkThroughKeysetPagesOfCashCardsInAnAmountRange() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?after=&size=1&minAmount=100", String.class);
+		JSONArray amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(123.45);
+
+		// The next page keeps the range.
+		URI next = URI.create(response.getHeaders().getFirst(HttpHeaders.LINK).replaceAll("^<(.*)>; rel=\"next\"$", "$1"));
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(next, String.class);
+		amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(150.0);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?after=&size=5&maxAmount=124", String.class);
+		amounts = JsonPath.parse(response.getBody()).read("$..amount");
+		assertThat(amounts).asList().containsExactly(1.00, 123.45);
+		assertThat(response.getHeaders().containsKey(HttpHeaders.LINK)).isFalse();
+	}
+
+	@Test
+	void shouldRejectAnAmountRangeThatEndsBeforeItStarts() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?minAmount=200&maxAmount=100", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void shouldExportAllCashCardsAsNewlineDelimitedJson() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/export", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+		// One card per line, in the default (amount) order, and only Sarah's cards.
+		String[] lines = response.getBody().split("\n");
+		assertThat(lines).hasSize(3);
+		Number id = JsonPath.parse(lines[0]).read("$.id");
+		assertThat(id).isEqualTo(100);
+		id = JsonPath.parse(lines[2]).read("$.id");
+		assertThat(id).isEqualTo(101);
+	}
+
+	@Test
+	void shouldSummarizeTheOwnersCashCards() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/summary", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		Number count = documentContext.read("$.count");
+		assertThat(count).isEqualTo(3);
+		Double total = documentContext.read("$.total");
+		assertThat(total).isEqualTo(274.45);
+		Double min = documentContext.read("$.min");
+		assertThat(min).isEqualTo(1.00);
+		Double max = documentContext.read("$.max");
+		assertThat(max).isEqualTo(150.00);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldKeepTheSummaryUpToDateWhenTheLargestCardIsDeleted() {
+		ResponseEntity<Void> deleteResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/101", HttpMethod.DELETE, null, Void.class);
+		assertThat(deleteResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/summary", String.class);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		Number count = documentContext.read("$.count");
+		assertThat(count).isEqualTo(2);
+		Double total = documentContext.read("$.total");
+		assertThat(total).isEqualTo(124.45);
+		Double max = documentContext.read("$.max");
+		assertThat(max).isEqualTo(123.45);
+	}
+
+	@Test
+	void shouldOnlySummarizeCashCardsOfTheAuthenticatedOwner() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/cashcards/summary", String.class);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		Number count = documentContext.read("$.count");
+		assertThat(count).isEqualTo(1);
+		String owner = documentContext.read("$.owner");
+		assertThat(owner).isEqualTo("kumar2");
+	}
+
+	@Test
+	void shouldReturnACashCardAsCborWhenTheClientAsksForIt() throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+		ResponseEntity<byte[]> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+
+		CashCard cashCard = new CBORMapper().readValue(response.getBody(), CashCard.class);
+		assertThat(cashCard).isEqualTo(new CashCard(99L, 123.45, "sarah1"));
+	}
+
+	@Test
+	void shouldReturnJsonWhenTheClientDoesNotAskForAFormat() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.ALL));
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldCreateANewCashCardFromASmileBody() throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(APPLICATION_SMILE);
+		byte[] body = new SmileMapper().writeValueAsBytes(new CashCard(null, 250.00, null));
+		ResponseEntity<Void> createResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards", HttpMethod.POST, new HttpEntity<>(body, headers), Void.class);
+		assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity(createResponse.getHeaders().getLocation(), String.class);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(250.00);
+	}
+
 	@Test
 	void shouldNotReturnACashCardWhenUsingBadCredentials() {
 		ResponseEntity<String> response = restTemplate
@@ -165,6 +371,19 @@ class CashCardApplicationTests {
 
 	}
 
+	@Test
+	void shouldNotAcceptABadPasswordAfterTheGoodOneHasBeenCached() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc1234")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
 	@Test
 	void shouldRejectUsersWhoAreNotCardOwners() {
 		ResponseEntity<String> response = restTemplate
@@ -223,6 +442,128 @@ class CashCardApplicationTests {
 				.withBasicAuth("sarah1", "abc123")
 				.exchange("/cashcards/102", HttpMethod.PUT, request, Void.class);
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		// The conditional UPDATE must not have touched Kumar's card either.
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/cashcards/102", String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(200.00);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldAnswerAConditionalGetOfACashCardWithNotModifiedUntilItChanges() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		String eTag = response.getHeaders().getETag();
+		assertThat(eTag).isNotNull();
+
+		ResponseEntity<String> notModified = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.GET, new HttpEntity<>(ifNoneMatch(eTag)), String.class);
+		assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(notModified.getBody()).isNull();
+
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.put("/cashcards/99", new CashCard(null, 19.99, null));
+
+		ResponseEntity<String> modified = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.GET, new HttpEntity<>(ifNoneMatch(eTag)), String.class);
+		assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldAnswerAConditionalGetOfAListPageWithNotModifiedUntilACashCardChanges() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards?page=0&size=2", String.class);
+		String eTag = response.getHeaders().getETag();
+		assertThat(eTag).isNotNull();
+
+		ResponseEntity<String> notModified = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards?page=0&size=2", HttpMethod.GET, new HttpEntity<>(ifNoneMatch(eTag)), String.class);
+		assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+		// Someone else's cards changing doesn't affect Sarah's pages.
+		restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.postForEntity("/cashcards", new CashCard(null, 5.00, null), Void.class);
+		notModified = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards?page=0&size=2", HttpMethod.GET, new HttpEntity<>(ifNoneMatch(eTag)), String.class);
+		assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+		restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards", new CashCard(null, 0.50, null), Void.class);
+		ResponseEntity<String> modified = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards?page=0&size=2", HttpMethod.GET, new HttpEntity<>(ifNoneMatch(eTag)), String.class);
+		assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+		JSONArray amounts = JsonPath.parse(modified.getBody()).read("$..amount");
+		assertThat(amounts.get(0)).isEqualTo(0.50);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldOnlyUpdateACashCardWhoseVersionMatchesIfMatch() {
+		String eTag = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class)
+				.getHeaders().getETag();
+
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.PUT,
+						new HttpEntity<>(new CashCard(null, 19.99, null), ifMatch(eTag)), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		// The first update changed the version, so a second one based on the same read must fail.
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.PUT,
+						new HttpEntity<>(new CashCard(null, 29.99, null), ifMatch(eTag)), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		ResponseEntity<Void> deleteResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/99", HttpMethod.DELETE, new HttpEntity<>(ifMatch(eTag)), Void.class);
+		assertThat(deleteResponse.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(19.99);
+	}
+
+	@Test
+	void shouldNotRevealACashCardOwnedBySomeoneElseThroughIfMatch() {
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/102", HttpMethod.PUT,
+						new HttpEntity<>(new CashCard(null, 333.33, null), ifMatch("\"0\"")), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	private static HttpHeaders ifNoneMatch(String eTag) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		return headers;
+	}
+
+	private static HttpHeaders ifMatch(String eTag) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfMatch(eTag);
+		return headers;
 	}
 
 	@Test
@@ -249,6 +590,139 @@ class CashCardApplicationTests {
 		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
 	}
 
+	@Test
+	@DirtiesContext
+	void shouldAdjustTheAmountOfACashCard() {
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards/99/adjust", new CashCardAdjustmentRequest(10.00, false), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(133.45);
+	}
+
+	@Test
+	void shouldRefuseAGuardedAdjustmentThatWouldMakeTheAmountNegative() {
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards/100/adjust", new CashCardAdjustmentRequest(-1.01, true), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/100", String.class);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(1.00);
+	}
+
+	@Test
+	void shouldNotAdjustACashCardThatIsOwnedBySomeoneElse() {
+		ResponseEntity<Void> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards/102/adjust", new CashCardAdjustmentRequest(10.00, false), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards/102/adjust", new CashCardAdjustmentRequest(10.00, true), Void.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldApplyABatchOfOperationsAndReportEachResult() {
+		String operations = """
+				[
+				  { "op": "create", "amount": 42.00 },
+				  { "op": "update", "id": 99, "amount": 19.99 },
+				  { "op": "delete", "id": 100 },
+				  { "op": "update", "id": 102, "amount": 333.33 },
+				  { "op": "update", "id": 100, "amount": 5.00 },
+				  { "op": "delete" }
+				]
+				""";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards/batch", new HttpEntity<>(operations, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray statuses = documentContext.read("$..status");
+		// Kumar's card 102 and card 100 (deleted earlier in the same batch) are not found,
+		// and the delete without an id is rejected.
+		assertThat(statuses).asList().containsExactly(201, 204, 204, 404, 404, 400);
+		Number createdId = documentContext.read("$[0].id");
+
+		ResponseEntity<String> getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/" + createdId, String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(42.00);
+
+		getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(19.99);
+
+		getResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/100", String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		getResponse = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/cashcards/102", String.class);
+		amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(200.00);
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldNotHideABatchCreatedCardBehindACachedMiss() {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		// Two cards in a row tell how far apart the ids of sarah1's cards are (1 on a single
+		// database, the number of shards' worth with sharding), so the next one is one more step on.
+		long firstId = idOf(sarah.postForEntity("/cashcards", new CashCard(null, 1.00, null), Void.class));
+		long secondId = idOf(sarah.postForEntity("/cashcards", new CashCard(null, 2.00, null), Void.class));
+		long nextId = secondId + (secondId - firstId);
+		// Probing the next id caches that it doesn't exist, and reading card 99 caches the card.
+		assertThat(sarah.getForEntity("/cashcards/" + nextId, String.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(sarah.getForEntity("/cashcards/99", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> response = sarah.postForEntity("/cashcards/batch", new HttpEntity<>("""
+				[
+				  { "op": "create", "amount": 42.00 },
+				  { "op": "update", "id": 99, "amount": 19.99 }
+				]
+				""", headers), String.class);
+		Number createdId = JsonPath.parse(response.getBody()).read("$[0].id");
+
+		ResponseEntity<String> getResponse = sarah.getForEntity("/cashcards/" + createdId, String.class);
+		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(42.00);
+
+		getResponse = sarah.getForEntity("/cashcards/99", String.class);
+		amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+		assertThat(amount).isEqualTo(19.99);
+	}
+
+	private static long idOf(ResponseEntity<Void> createResponse) {
+		String path = createResponse.getHeaders().getLocation().getPath();
+		return Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+	}
+
 	@Test
 	void shouldNotDeleteACashCardThatDoesNotExist() {
 		ResponseEntity<Void> deleteResponse = restTemplate
@@ -269,4 +743,8 @@ class CashCardApplicationTests {
 				.getForEntity("/cashcards/102", String.class);
 		assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
+
+	// The JSON body of POST /cashcards/{id}/adjust.
+	record CashCardAdjustmentRequest(Double delta, boolean nonNegative) {
+	}
 }
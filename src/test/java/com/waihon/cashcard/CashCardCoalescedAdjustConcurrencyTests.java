@@ -0,0 +1,10 @@
+package com.waihon.cashcard;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Every test of CashCardAdjustConcurrencyTests again, with the adjustments to a card merged over
+// a 5ms window before they are written.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "cashcard.adjust.coalesce-window=5ms")
+class CashCardCoalescedAdjustConcurrencyTests extends CashCardAdjustConcurrencyTests {
+}
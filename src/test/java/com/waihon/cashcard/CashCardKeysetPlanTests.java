@@ -0,0 +1,47 @@
+package com.waihon.cashcard;
+
+import com.waihon.cashcard.repository.CashCardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A keyset page must cost the same however deep it is, which it only does if the database seeks
+// to the page's position in the (owner, amount, id) index. If the plan's index condition is just
+// the owner, every earlier card of the owner is read and thrown away.
+@SpringBootTest
+class CashCardKeysetPlanTests {
+
+	static final Pattern INDEX_CONDITION = Pattern.compile("/\\* PUBLIC\\.CASH_CARD_OWNER_AMOUNT_ID: (.*?) \\*/");
+
+	@Autowired
+	NamedParameterJdbcTemplate jdbcTemplate;
+
+	@Test
+	void shouldSeekToTheKeysetPageInTheIndex() {
+		String plan = jdbcTemplate.queryForObject("EXPLAIN " + CashCardRepository.KEYSET_PAGE_AFTER,
+				Map.of("owner", "sarah1", "amount", 100.00, "id", 99L, "limit", 20), String.class);
+
+		assertThat(indexCondition(plan)).contains("OWNER").contains("AMOUNT");
+	}
+
+	@Test
+	void shouldSeekToTheKeysetPageOfAnAmountRangeInTheIndex() {
+		String plan = jdbcTemplate.queryForObject("EXPLAIN " + CashCardRepository.KEYSET_PAGE_AFTER_UP_TO,
+				Map.of("owner", "sarah1", "amount", 100.00, "id", 0L, "maxAmount", 200.00, "limit", 20), String.class);
+
+		assertThat(indexCondition(plan)).contains("OWNER").contains("AMOUNT");
+	}
+
+	static String indexCondition(String plan) {
+		Matcher matcher = INDEX_CONDITION.matcher(plan.replace("\"", "").toUpperCase());
+		assertThat(matcher.find()).as("Plan uses CASH_CARD_OWNER_AMOUNT_ID:%n%s", plan).isTrue();
+		return matcher.group(1);
+	}
+}
@@ -0,0 +1,104 @@
+package com.waihon.cashcard;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.repository.CardLedgerWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.minidev.json.JSONArray;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every balance change of a card ends up in its history, in order, whichever endpoint made it.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CashCardLedgerTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CardLedgerWriter cardLedgerWriter;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	@DirtiesContext
+	void shouldPageThroughEveryBalanceChangeOfACard() {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		URI location = sarah.postForEntity("/cashcards", new CashCard(null, 10.00, null), Void.class)
+				.getHeaders().getLocation();
+		sarah.postForEntity(location + "/adjust", new CashCardApplicationTests.CashCardAdjustmentRequest(5.00, false), Void.class);
+		sarah.exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 20.00, null)), Void.class);
+		// Same amount again: not a balance change.
+		sarah.exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 20.00, null)), Void.class);
+		sarah.exchange(location, HttpMethod.DELETE, null, Void.class);
+
+		// Don't wait for the next scheduled flush.
+		cardLedgerWriter.flush();
+		assertThat(meterRegistry.get("cashcard.ledger.backlog").gauge().value()).isZero();
+
+		ResponseEntity<String> firstPage = sarah.getForEntity(location + "/history?size=2", String.class);
+		assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext first = JsonPath.parse(firstPage.getBody());
+		assertThat((JSONArray) first.read("$[*].type")).containsExactly("created", "updated");
+		assertThat((Object) first.read("$[0].oldAmount")).isNull();
+		assertThat((Double) first.read("$[1].oldAmount")).isEqualTo(10.00);
+		assertThat((Double) first.read("$[1].newAmount")).isEqualTo(15.00);
+
+		ResponseEntity<String> secondPage = sarah.getForEntity(nextLink(firstPage), String.class);
+		DocumentContext second = JsonPath.parse(secondPage.getBody());
+		assertThat((JSONArray) second.read("$[*].type")).containsExactly("updated", "deleted");
+		assertThat((Double) second.read("$[0].newAmount")).isEqualTo(20.00);
+		assertThat((Double) second.read("$[1].oldAmount")).isEqualTo(20.00);
+
+		ResponseEntity<String> lastPage = sarah.getForEntity(nextLink(secondPage), String.class);
+		assertThat(lastPage.getBody()).isEqualTo("[]");
+		assertThat(lastPage.getHeaders().containsKey(HttpHeaders.LINK)).isFalse();
+	}
+
+	@Test
+	void shouldNotShowTheHistoryOfCardsOwnedBySomeoneElse() {
+		cardLedgerWriter.flush();
+
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/102/history", String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void shouldShowTheHistoryOfTheSeededCardsOnce() {
+		cardLedgerWriter.flush();
+
+		assertCreatedOnly(restTemplate.withBasicAuth("sarah1", "abc123"), 99, 123.45);
+		assertCreatedOnly(restTemplate.withBasicAuth("kumar2", "xyz789"), 102, 200.00);
+	}
+
+	private static void assertCreatedOnly(TestRestTemplate owner, long id, double amount) {
+		ResponseEntity<String> response = owner.getForEntity("/cashcards/" + id + "/history", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext history = JsonPath.parse(response.getBody());
+		assertThat((JSONArray) history.read("$[*].type")).containsExactly("created");
+		assertThat((Double) history.read("$[0].newAmount")).isEqualTo(amount);
+	}
+
+	private static String nextLink(ResponseEntity<?> response) {
+		String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+		assertThat(link).endsWith("; rel=\"next\"");
+		return link.substring(1, link.indexOf('>'));
+	}
+}
@@ -0,0 +1,10 @@
+package com.waihon.cashcard;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Every test of CashCardApplicationTests again, with the cards stored in the memory-mapped log
+// instead of the cash_card table. The log starts out with the cards of data.sql.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "cashcard.storage.engine=log")
+class CashCardLogApplicationTests extends CashCardApplicationTests {
+}
@@ -0,0 +1,10 @@
+package com.waihon.cashcard;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Every test of CashCardLedgerTests again, with the cards stored in the memory-mapped log. The
+// seeded cards' history comes from data.sql, every later change from the log engine's writes.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "cashcard.storage.engine=log")
+class CashCardLogLedgerTests extends CashCardLedgerTests {
+}
@@ -0,0 +1,40 @@
+package com.waihon.cashcard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+// Spring Boot tests normally don't export metrics; we want the real Prometheus registry here.
+@AutoConfigureObservability
+class CashCardMetricsTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Test
+	void shouldExposeRequestAuthenticationRepositoryAndPoolMetricsForPrometheus() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		// The scrape endpoint doesn't need credentials.
+		ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+		assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(scrape.getBody())
+				.contains("http_server_requests_seconds_bucket{")
+				.contains("uri=\"/cashcards/{requestedId}\"")
+				.contains("spring_security_authentications_seconds")
+				.contains("spring_data_repository_invocations_seconds_bucket{")
+				.contains("cashcard_serialization_seconds")
+				.contains("hikaricp_connections_active")
+				.contains("cashcard_cache_hits_total");
+	}
+}
@@ -0,0 +1,58 @@
+package com.waihon.cashcard;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Card owners get a burst of 3 requests, refilled at one every 10 seconds, and no queueing.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"cashcard.rate-limit.enabled=true",
+		"cashcard.rate-limit.roles.CARD-OWNER.burst=3",
+		"cashcard.rate-limit.roles.CARD-OWNER.per-second=0.1",
+		"cashcard.rate-limit.max-queue-wait=0ms"})
+class CashCardRateLimitTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	void shouldTurnAwayAnOwnerOverTheirLimitWithoutAffectingOthers() {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		for (int i = 0; i < 3; i++) {
+			assertThat(sarah.getForEntity("/cashcards/99", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+		}
+
+		ResponseEntity<String> response = sarah.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		assertThat(Long.parseLong(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isBetween(1L, 10L);
+
+		// Kumar has a bucket of his own.
+		ResponseEntity<String> kumar = restTemplate
+				.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/cashcards/102", String.class);
+		assertThat(kumar.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		assertThat(meterRegistry.get("cashcard.rate-limit.rejected").tag("role", "CARD-OWNER").counter().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void shouldNotLimitRequestsThatFailAuthentication() {
+		for (int i = 0; i < 5; i++) {
+			ResponseEntity<String> response = restTemplate
+					.withBasicAuth("kumar2", "BAD-PASSWORD")
+					.getForEntity("/cashcards/102", String.class);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.waihon.cashcard;
+
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.repository.CashCardSummaryTrigger;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CashCardRuntimeHintsTest {
+
+    @Test
+    void shouldRegisterWhatTheNativeImageNeeds() throws NoSuchMethodException {
+        RuntimeHints hints = new RuntimeHints();
+        new CashCardRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(CashCard.class.getMethod("amount")))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onConstructor(CashCardSummaryTrigger.class.getConstructor()))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onType(TypeReference.of(
+                        "com.waihon.cashcard.repository.CashCardSummaryRepositoryImpl")))
+                .accepts(hints);
+    }
+}
@@ -0,0 +1,11 @@
+package com.waihon.cashcard;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Every test of CashCardApplicationTests again, with the cards spread over three databases by
+// owner. data.sql puts all cards on shard 0, so owners whose home is another shard have been moved
+// there by the startup rebalance before the tests run.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {"cashcard.sharding.enabled=true", "cashcard.sharding.shards=3"})
+class CashCardShardedApplicationTests extends CashCardApplicationTests {
+}
@@ -0,0 +1,10 @@
+package com.waihon.cashcard;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Every test of CashCardLedgerTests again, with the cards spread over three databases by owner.
+// The seeded cards' history is written on shard 0, and has to have moved home with the cards.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {"cashcard.sharding.enabled=true", "cashcard.sharding.shards=3"})
+class CashCardShardedLedgerTests extends CashCardLedgerTests {
+}
@@ -0,0 +1,199 @@
+package com.waihon.cashcard;
+
+import com.jayway.jsonpath.JsonPath;
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.events.CashCardEventBus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CashCardStreamTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CashCardEventBus eventBus;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	@Test
+	@DirtiesContext
+	void shouldStreamTheOwnersChangesAndResumeAfterTheLastEventId() throws Exception {
+		EventStream stream = open("sarah1", "abc123", null);
+
+		ResponseEntity<Void> createResponse = restTemplate
+				.withBasicAuth("sarah1", "abc123")
+				.postForEntity("/cashcards", new CashCard(null, 250.00, null), Void.class);
+		assertThat(createResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		URI location = createResponse.getHeaders().getLocation();
+		// Kumar's changes are none of Sarah's business.
+		restTemplate.withBasicAuth("kumar2", "xyz789")
+				.postForEntity("/cashcards", new CashCard(null, 1.00, null), Void.class);
+
+		String createdId = stream.nextLineStartingWith("id:");
+		assertThat(stream.nextLineStartingWith("event:")).isEqualTo("created");
+		assertThat(stream.nextLineStartingWith("data:"))
+				.contains("\"id\":" + location.getPath().substring("/cashcards/".length()))
+				.contains("\"amount\":250.0");
+		stream.close();
+
+		// Changes made while the client is away are replayed when it comes back.
+		restTemplate.withBasicAuth("sarah1", "abc123").exchange(location, HttpMethod.PUT,
+				new HttpEntity<>(new CashCard(null, 19.99, null)), Void.class);
+		restTemplate.withBasicAuth("sarah1", "abc123").exchange(location, HttpMethod.DELETE, null, Void.class);
+
+		EventStream resumed = open("sarah1", "abc123", createdId);
+		assertThat(resumed.nextLineStartingWith("event:")).isEqualTo("updated");
+		assertThat(resumed.nextLineStartingWith("data:")).contains("\"amount\":19.99");
+		assertThat(resumed.nextLineStartingWith("event:")).isEqualTo("deleted");
+		resumed.close();
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldStreamTheLastCommittedAmountOfACardUnderConcurrentUpdates() throws Exception {
+		EventStream stream = open("sarah1", "abc123", null);
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int client = 0; client < 8; client++) {
+				int first = client * 5;
+				results.add(clients.submit(() -> {
+					for (int i = first; i < first + 5; i++) {
+						sarah.exchange("/cashcards/99", HttpMethod.PUT,
+								new HttpEntity<>(new CashCard(null, 1000.00 + i, null)), Void.class);
+					}
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+
+		Double stored = JsonPath.parse(sarah.getForEntity("/cashcards/99", String.class).getBody()).read("$.amount");
+		Double streamed = JsonPath.parse(stream.lastLineStartingWith("data:")).read("$.amount");
+		assertThat(streamed).isEqualTo(stored);
+		stream.close();
+	}
+
+	@Test
+	void shouldResetAClientThatResumesFromAnUnknownEventId() throws Exception {
+		EventStream stream = open("kumar2", "xyz789", "not-an-event-id");
+
+		assertThat(stream.nextLineStartingWith("event:")).isEqualTo("reset");
+		stream.close();
+	}
+
+	@Test
+	void shouldNotStreamWithoutAuthentication() throws Exception {
+		HttpResponse<Void> response = httpClient.send(
+				HttpRequest.newBuilder(URI.create(restTemplate.getRootUri() + "/cashcards/stream")).build(),
+				HttpResponse.BodyHandlers.discarding());
+
+		assertThat(response.statusCode()).isEqualTo(HttpStatus.UNAUTHORIZED.value());
+	}
+
+	// Opens GET /cashcards/stream and waits until the server has subscribed it to the owner's events.
+	private EventStream open(String username, String password, String lastEventId) throws InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(restTemplate.getRootUri() + "/cashcards/stream"))
+				.header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+				.header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder()
+						.encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8)));
+		if (lastEventId != null) {
+			request.header("Last-Event-ID", lastEventId);
+		}
+		EventStream stream = new EventStream();
+		// The response only starts with the first event, so read it off the test's thread.
+		stream.response = httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream())
+				.thenAcceptAsync(response -> stream.read(response.body()));
+		for (int i = 0; i < 500 && !eventBus.isWatched(username); i++) {
+			Thread.sleep(10);
+		}
+		assertThat(eventBus.isWatched(username)).isTrue();
+		return stream;
+	}
+
+	private static class EventStream {
+
+		final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+		CompletableFuture<Void> response;
+		volatile InputStream body;
+
+		void read(InputStream body) {
+			this.body = body;
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			} catch (IOException e) {
+				// Closed by the test.
+			}
+		}
+
+		// The value of the next "field:value" line of the given field.
+		String nextLineStartingWith(String field) throws InterruptedException {
+			while (true) {
+				String line = lines.poll(5, TimeUnit.SECONDS);
+				assertThat(line).as("Expected a %s line", field).isNotNull();
+				if (line.startsWith(field)) {
+					return line.substring(field.length()).trim();
+				}
+			}
+		}
+
+		// The value of the last "field:value" line of the given field, once the stream has gone quiet.
+		String lastLineStartingWith(String field) throws InterruptedException {
+			String last = nextLineStartingWith(field);
+			String line;
+			while ((line = lines.poll(1, TimeUnit.SECONDS)) != null) {
+				if (line.startsWith(field)) {
+					last = line.substring(field.length()).trim();
+				}
+			}
+			return last;
+		}
+
+		void close() throws IOException {
+			if (body != null) {
+				body.close();
+			}
+			response.cancel(true);
+		}
+	}
+}
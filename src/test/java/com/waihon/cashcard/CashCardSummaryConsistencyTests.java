@@ -0,0 +1,125 @@
+package com.waihon.cashcard;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.repository.CashCardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// The summary must match the cards exactly after many clients have created, updated, adjusted and
+// deleted cards of the same owner at the same time, and a rebuild must find nothing to repair.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CashCardSummaryConsistencyTests {
+
+	static final int THREADS = 32;
+	static final int ROUNDS_PER_THREAD = 10;
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CashCardRepository cashCardRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	@DirtiesContext
+	void shouldKeepTheSummaryConsistentUnderConcurrentWrites() throws Exception {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				int seed = thread;
+				results.add(clients.submit(() -> {
+					start.await();
+					for (int round = 0; round < ROUNDS_PER_THREAD; round++) {
+						// Create two cards, change one of them twice and delete the other, while all
+						// threads also top up the shared card 99.
+						URI first = sarah.postForLocation("/cashcards", new CashCard(null, 10.0 + seed, null));
+						URI second = sarah.postForLocation("/cashcards", new CashCard(null, 500.0 + round, null));
+						sarah.put(first, new CashCard(null, 0.5 * round, null));
+						ResponseEntity<Void> adjusted = sarah.postForEntity(first.getPath() + "/adjust",
+								new CashCardApplicationTests.CashCardAdjustmentRequest(0.25, false), Void.class);
+						assertThat(adjusted.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+						ResponseEntity<Void> deleted = sarah.exchange(second, HttpMethod.DELETE, null, Void.class);
+						assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+						sarah.postForEntity("/cashcards/99/adjust",
+								new CashCardApplicationTests.CashCardAdjustmentRequest(1.00, false), Void.class);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+
+		// Work out the expected aggregates from the cards themselves.
+		String[] lines = sarah.getForEntity("/cashcards/export", String.class).getBody().split("\n");
+		BigDecimal total = BigDecimal.ZERO;
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		for (String line : lines) {
+			Double amount = JsonPath.parse(line).read("$.amount", Double.class);
+			total = total.add(BigDecimal.valueOf(amount));
+			min = Math.min(min, amount);
+			max = Math.max(max, amount);
+		}
+		assertThat(lines).hasSize(3 + THREADS * ROUNDS_PER_THREAD);
+
+		ResponseEntity<String> response = sarah.getForEntity("/cashcards/summary", String.class);
+		DocumentContext summary = JsonPath.parse(response.getBody());
+		assertThat(summary.read("$.count", Long.class)).isEqualTo((long) lines.length);
+		assertThat(summary.read("$.total", Double.class)).isCloseTo(total.doubleValue(), within(0.001));
+		assertThat(summary.read("$.min", Double.class)).isEqualTo(min);
+		assertThat(summary.read("$.max", Double.class)).isEqualTo(max);
+
+		assertThat(cashCardRepository.rebuildSummaries()).isZero();
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldChangeTheListETagWhenTheOwnerHasNoSummaryRowYet() {
+		TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+		// As for cards that were written before the summary existed.
+		jdbcTemplate.update("DELETE FROM cash_card_summary WHERE owner = ?", "sarah1");
+		String eTag = sarah.getForEntity("/cashcards", String.class).getHeaders().getETag();
+
+		sarah.put("/cashcards/99", new CashCard(null, 19.99, null));
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		ResponseEntity<String> response = sarah.exchange("/cashcards", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		ResponseEntity<String> summary = sarah.getForEntity("/cashcards/summary", String.class);
+		assertThat(JsonPath.parse(summary.getBody()).read("$.count", Long.class)).isEqualTo(3L);
+	}
+}
@@ -0,0 +1,369 @@
+package com.waihon.cashcard.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.waihon.cashcard.repository.CardLedgerWriter;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives the whole stack (Tomcat, the security filter chain, the controller and H2) with a mix of
+// GET, list, POST, PUT and DELETE requests from many owners, and writes throughput and latency
+// percentiles per operation to build/reports/load/api-load.json.
+// Run with: ./gradlew loadTest
+// and e.g. -Dload.rate=2000 -Dload.duration-seconds=60 -Dload.owners=5000 -Dload.cards-per-owner=50
+// -Dload.mix=get:80,list:10,post:4,put:4,delete:2 to change the load.
+//
+// The load is open-loop: requests are started at a fixed rate whether or not earlier ones have
+// finished, like independent users would send them. Each latency is measured from the time the
+// request was due to be sent, not from when it was, so a stall that holds up the sender counts
+// against every request it delays (the coordinated omission correction). The time from the actual
+// send is reported next to it as the service time; a large gap between the two means the machine
+// running the load couldn't keep up.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.max-connections=20000", "server.tomcat.accept-count=1000"})
+class ApiLoadBenchmark {
+
+    static final int RATE = Integer.getInteger("load.rate", 500);
+    static final Duration WARMUP = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 10));
+    static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration-seconds", 30));
+    static final int OWNERS = Integer.getInteger("load.owners", 1_000);
+    static final int CARDS_PER_OWNER = Integer.getInteger("load.cards-per-owner", 20);
+    static final Map<Operation, Integer> MIX = mix(System.getProperty("load.mix", "get:60,list:15,post:10,put:10,delete:5"));
+    static final int TOTAL_WEIGHT = MIX.values().stream().mapToInt(Integer::intValue).sum();
+    static final Path REPORT = Path.of(System.getProperty("load.report", "build/reports/load/api-load.json"));
+
+    private static final String OWNER_PREFIX = "load-owner-";
+    // Every generated owner has sarah1's password, abc123, under the same BCrypt hash. The
+    // credential cache then verifies it once for all of them, as it would for each real user
+    // after their first request, instead of running BCrypt per owner during the measurement.
+    private static final String PASSWORD_HASH = "$2a$10$TYVFujq0TO5telJH.gNYIOh4j4g2BIQ482CttLAqwMtpscD/hWHqy";
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    enum Operation {
+        GET(200), LIST(200), POST(201), PUT(204), DELETE(204);
+
+        final int expectedStatus;
+
+        Operation(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Latencies are recorded in nanoseconds, from the intended and from the actual send time, for
+    // every request that completed, failed or timed out. Leaving the failures out would hide the
+    // slowest requests of an overloaded server from the tail percentiles.
+    static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final LongAdder successes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    record Card(int owner, long id) {
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    CardLedgerWriter cardLedgerWriter;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final String[] authorizations = new String[OWNERS];
+    private final long[][] cards = new long[OWNERS][CARDS_PER_OWNER];
+    // DELETE only removes cards nobody reads: extra seeded ones, and the ones POST created.
+    // That keeps GET and PUT from running into cards that are already gone.
+    private final ConcurrentLinkedQueue<Card> deletable = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void throughputAndLatencyUnderAMixOfRequests() throws Exception {
+        seed();
+
+        run(WARMUP, newStats());
+        Map<Operation, Stats> stats = newStats();
+        double seconds = run(DURATION, stats);
+
+        Map<String, Object> report = report(stats, seconds);
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(REPORT.toFile(), report);
+        System.out.printf("Report written to %s%n", REPORT.toAbsolutePath());
+
+        assertThat(stats.values().stream().mapToLong(operation -> operation.successes.sum()).sum()).isPositive();
+    }
+
+    // Creates the owners and, for each of them, CARDS_PER_OWNER cards to read and update plus
+    // enough to delete to last the run.
+    private void seed() {
+        UserDetailsManager users = (UserDetailsManager) userDetailsService;
+        for (int owner = 0; owner < OWNERS; owner++) {
+            String username = OWNER_PREFIX + owner;
+            users.createUser(User.withUsername(username).password(PASSWORD_HASH).roles("CARD-OWNER").build());
+            authorizations[owner] = "Basic " + Base64.getEncoder()
+                    .encodeToString((username + ":abc123").getBytes(StandardCharsets.UTF_8));
+        }
+
+        insertCards(CARDS_PER_OWNER);
+        Long lastReadable = jdbcTemplate.queryForObject("SELECT MAX(id) FROM cash_card", Long.class);
+        double deletes = (double) RATE * (WARMUP.toSeconds() + DURATION.toSeconds())
+                * MIX.getOrDefault(Operation.DELETE, 0) / TOTAL_WEIGHT;
+        insertCards((int) Math.ceil(deletes * 1.1 / OWNERS));
+
+        int[] filled = new int[OWNERS];
+        jdbcTemplate.query("SELECT id, owner FROM cash_card WHERE owner LIKE ? ORDER BY id", resultSet -> {
+            long id = resultSet.getLong("id");
+            int owner = Integer.parseInt(resultSet.getString("owner").substring(OWNER_PREFIX.length()));
+            if (id <= lastReadable) {
+                cards[owner][filled[owner]++] = id;
+            } else {
+                deletable.add(new Card(owner, id));
+            }
+        }, OWNER_PREFIX + "%");
+        // Write the seeded cards' ledger entries now, rather than in the background during the run.
+        cardLedgerWriter.flush();
+    }
+
+    private void insertCards(int perOwner) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int owner = 0; owner < OWNERS; owner++) {
+            for (int card = 0; card < perOwner; card++) {
+                batch.add(new Object[]{randomAmount(), OWNER_PREFIX + owner});
+                if (batch.size() == INSERT_BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate("INSERT INTO cash_card (amount, owner) VALUES (?, ?)", batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO cash_card (amount, owner) VALUES (?, ?)", batch);
+        }
+    }
+
+    // Starts one request every 1/RATE seconds for duration, then waits for the ones still
+    // outstanding. Returns the seconds from the first start to the last completion.
+    private double run(Duration duration, Map<Operation, Stats> stats) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long requests = duration.toNanos() / interval;
+        AtomicInteger outstanding = new AtomicInteger();
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long intended = start + i * interval;
+            long delay;
+            while ((delay = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            send(nextOperation(), intended, stats, outstanding);
+        }
+        long deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void send(Operation operation, long intended, Map<Operation, Stats> stats, AtomicInteger outstanding) {
+        Stats operationStats = stats.get(operation);
+        int owner;
+        String path;
+        if (operation == Operation.DELETE) {
+            Card card = deletable.poll();
+            if (card == null) {
+                // Only if the mix deletes faster than it creates for longer than the seed allowed for.
+                operationStats.errors.increment();
+                return;
+            }
+            owner = card.owner();
+            path = "/cashcards/" + card.id();
+        } else {
+            owner = ThreadLocalRandom.current().nextInt(OWNERS);
+            path = switch (operation) {
+                case GET, PUT -> "/cashcards/" + cards[owner][ThreadLocalRandom.current().nextInt(CARDS_PER_OWNER)];
+                case LIST -> "/cashcards?page=0&size=20&sort=amount,asc";
+                case POST -> "/cashcards";
+                case DELETE -> throw new IllegalStateException();
+            };
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", authorizations[owner])
+                .timeout(REQUEST_TIMEOUT);
+        HttpRequest request = switch (operation) {
+            case GET, LIST -> builder.GET().build();
+            case POST -> builder.header("Content-Type", "application/json").POST(amountBody()).build();
+            case PUT -> builder.header("Content-Type", "application/json").PUT(amountBody()).build();
+            case DELETE -> builder.DELETE().build();
+        };
+
+        outstanding.incrementAndGet();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long completed = System.nanoTime();
+            operationStats.latency.recordValue(completed - intended);
+            operationStats.serviceTime.recordValue(completed - sent);
+            if (failure != null || response.statusCode() != operation.expectedStatus) {
+                operationStats.errors.increment();
+            } else {
+                operationStats.successes.increment();
+                if (operation == Operation.POST) {
+                    response.headers().firstValue("Location").ifPresent(location -> deletable.add(
+                            new Card(owner, Long.parseLong(location.substring(location.lastIndexOf('/') + 1)))));
+                }
+            }
+            outstanding.decrementAndGet();
+        });
+    }
+
+    private static Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(TOTAL_WEIGHT);
+        for (Map.Entry<Operation, Integer> entry : MIX.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static HttpRequest.BodyPublisher amountBody() {
+        return HttpRequest.BodyPublishers.ofString("{\"amount\":" + randomAmount() + "}");
+    }
+
+    private static double randomAmount() {
+        return ThreadLocalRandom.current().nextInt(100_000) / 100.0;
+    }
+
+    private static Map<Operation, Stats> newStats() {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : MIX.keySet()) {
+            stats.put(operation, new Stats());
+        }
+        return stats;
+    }
+
+    // get:60,list:15,... as weights per operation. Operations that aren't listed aren't sent.
+    static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] operationAndWeight = entry.split(":");
+            if (operationAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in load.mix, got " + entry);
+            }
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(operationAndWeight[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no operation with a positive weight: " + mix);
+        }
+        return weights;
+    }
+
+    private Map<String, Object> report(Map<Operation, Stats> stats, double seconds) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("targetRate", RATE);
+        report.put("warmupSeconds", WARMUP.toSeconds());
+        report.put("durationSeconds", DURATION.toSeconds());
+        report.put("elapsedSeconds", seconds);
+        report.put("owners", OWNERS);
+        report.put("cardsPerOwner", CARDS_PER_OWNER);
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        MIX.forEach((operation, weight) -> mix.put(operation.key(), weight));
+        report.put("mix", mix);
+
+        Histogram allLatency = new Histogram(3);
+        Histogram allServiceTime = new Histogram(3);
+        long allSuccesses = 0;
+        long allErrors = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operation = entry.getValue();
+            allLatency.add(operation.latency);
+            allServiceTime.add(operation.serviceTime);
+            allSuccesses += operation.successes.sum();
+            allErrors += operation.errors.sum();
+            operations.put(entry.getKey().key(), summary(entry.getKey().key(), operation.latency,
+                    operation.serviceTime, operation.successes.sum(), operation.errors.sum(), seconds));
+        }
+        report.put("all", summary("all", allLatency, allServiceTime, allSuccesses, allErrors, seconds));
+        report.put("operations", operations);
+        return report;
+    }
+
+    // Throughput counts the requests that succeeded; the percentiles cover the failed ones, too.
+    private static Map<String, Object> summary(String label, Histogram latency, Histogram serviceTime, long successes,
+                                               long errors, double seconds) {
+        System.out.printf("%-6s %8.1f requests/s, p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms, %d errors%n",
+                label, successes / seconds, millis(latency.getValueAtPercentile(50)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()), errors);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", successes + errors);
+        summary.put("errors", errors);
+        summary.put("throughput", successes / seconds);
+        summary.put("latencyMs", percentiles(latency));
+        summary.put("serviceTimeMs", percentiles(serviceTime));
+        return summary;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("mean", histogram.getMean() / 1e6);
+        percentiles.put("p50", millis(histogram.getValueAtPercentile(50)));
+        percentiles.put("p90", millis(histogram.getValueAtPercentile(90)));
+        percentiles.put("p99", millis(histogram.getValueAtPercentile(99)));
+        percentiles.put("p99.9", millis(histogram.getValueAtPercentile(99.9)));
+        percentiles.put("p99.99", millis(histogram.getValueAtPercentile(99.99)));
+        percentiles.put("max", millis(histogram.getMaxValue()));
+        return percentiles;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
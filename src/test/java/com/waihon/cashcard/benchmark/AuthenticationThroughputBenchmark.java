@@ -0,0 +1,38 @@
+package com.waihon.cashcard.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Authenticated GET /cashcards/{id} throughput with the credential cache: BCrypt runs once, then
+// the verified credentials are served from the cache. UncachedAuthenticationThroughputBenchmark
+// is the same without it.
+// Run with: ./gradlew benchmark --tests '*AuthenticationThroughputBenchmark*'
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AuthenticationThroughputBenchmark {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Value("${cashcard.security.credential-cache.enabled}")
+    boolean credentialCache;
+
+    @Test
+    void authenticatedRequestsPerSecond() throws Exception {
+        TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+        String label = credentialCache ? "Cached credentials" : "BCrypt on every request";
+        double requestsPerSecond = Throughput.measure(label, sequence -> {
+            ResponseEntity<String> response = sarah.getForEntity("/cashcards/99", String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        });
+        assertThat(requestsPerSecond).isPositive();
+    }
+}
@@ -0,0 +1,99 @@
+package com.waihon.cashcard.benchmark;
+
+import com.jayway.jsonpath.JsonPath;
+import com.waihon.cashcard.entity.CashCard;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares how many cards per second can be created and updated through the single-item
+// endpoints and through POST /cashcards/batch.
+// Run with: ./gradlew benchmark --tests '*BatchThroughputBenchmark*'
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+class BatchThroughputBenchmark {
+
+    static final int BATCH_SIZE = Integer.getInteger("benchmark.batch-size", 100);
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void cardsPerSecond() throws Exception {
+        TestRestTemplate sarah = restTemplate.withBasicAuth("sarah1", "abc123");
+
+        double singleCreates = Throughput.measure("POST /cashcards", sequence -> {
+            ResponseEntity<Void> response = sarah.postForEntity("/cashcards", new CashCard(null, 1.00, null), Void.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        });
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> creates = new HttpEntity<>(operations(i -> "{\"op\":\"create\",\"amount\":1.00}"), headers);
+        // Updates go to BATCH_SIZE distinct cards, so that neither path can fold repeated writes together.
+        // Batch updates are version-checked, and two batches updating the same card at the same time
+        // would make one of them fail with 409, so every client thread (and the warmup, which runs on
+        // the calling thread) updates its own cards.
+        List<HttpEntity<String>> updateBatches = new ArrayList<>();
+        List<Number> ids = List.of();
+        for (int client = 0; client <= Throughput.CLIENTS; client++) {
+            ResponseEntity<String> created = sarah.postForEntity("/cashcards/batch", creates, String.class);
+            ids = JsonPath.parse(created.getBody()).read("$[*].id");
+            List<Number> clientIds = ids;
+            updateBatches.add(new HttpEntity<>(
+                    operations(i -> "{\"op\":\"update\",\"id\":" + clientIds.get(i) + ",\"amount\":2.00}"), headers));
+        }
+        AtomicInteger nextUpdateBatch = new AtomicInteger();
+        ThreadLocal<HttpEntity<String>> updates = ThreadLocal.withInitial(
+                () -> updateBatches.get(nextUpdateBatch.getAndIncrement()));
+        List<Number> singleIds = ids;
+
+        double singleUpdates = Throughput.measure("PUT /cashcards/{id}", sequence -> {
+            ResponseEntity<Void> response = sarah.exchange("/cashcards/" + singleIds.get(sequence % singleIds.size()),
+                    HttpMethod.PUT,
+                    new HttpEntity<>(new CashCard(null, (double) sequence, null)), Void.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        });
+        double batchCreates = Throughput.measure("POST /cashcards/batch (" + BATCH_SIZE + " creates)", sequence -> {
+            ResponseEntity<String> response = sarah.postForEntity("/cashcards/batch", creates, String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        });
+        double batchUpdates = Throughput.measure("POST /cashcards/batch (" + BATCH_SIZE + " updates)", sequence -> {
+            ResponseEntity<String> response = sarah.postForEntity("/cashcards/batch", updates.get(), String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        });
+
+        System.out.printf("Creates: %.1f cards/s one by one, %.1f cards/s batched%n",
+                singleCreates, batchCreates * BATCH_SIZE);
+        System.out.printf("Updates: %.1f cards/s one by one, %.1f cards/s batched%n",
+                singleUpdates, batchUpdates * BATCH_SIZE);
+    }
+
+    private static String operations(IntFunction<String> operation) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(operation.apply(i));
+        }
+        return json.append(']').toString();
+    }
+}
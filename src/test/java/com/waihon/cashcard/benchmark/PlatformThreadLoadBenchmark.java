@@ -0,0 +1,22 @@
+package com.waihon.cashcard.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+// The load of VirtualThreadLoadBenchmark on Tomcat's default pool of 200 platform threads, with
+// room for the extra connections.
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.max-connections=20000", "server.tomcat.accept-count=1000"})
+class PlatformThreadLoadBenchmark {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void throughputAndTailLatencyUnderConcurrentClients() throws Exception {
+        ClosedLoopLoad.measure("Platform threads", port);
+    }
+}
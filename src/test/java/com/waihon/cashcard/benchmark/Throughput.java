@@ -0,0 +1,54 @@
+package com.waihon.cashcard.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// A tiny closed-loop driver: a fixed number of clients each send requests back to back, and
+// we report how many requests per second they completed together.
+final class Throughput {
+
+    static final int WARMUP_REQUESTS = Integer.getInteger("benchmark.warmup", 200);
+    static final int REQUESTS = Integer.getInteger("benchmark.requests", 2_000);
+    static final int CLIENTS = Integer.getInteger("benchmark.clients", 8);
+
+    private Throughput() {
+    }
+
+    interface Request {
+        void send(int sequence) throws Exception;
+    }
+
+    static double measure(String label, Request request) throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            request.send(i);
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            int perClient = REQUESTS / CLIENTS;
+            List<Future<?>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int client = 0; client < CLIENTS; client++) {
+                int offset = client * perClient;
+                results.add(clients.submit(() -> {
+                    for (int i = 0; i < perClient; i++) {
+                        request.send(offset + i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double requestsPerSecond = perClient * CLIENTS / seconds;
+            System.out.printf("%s: %d requests from %d clients in %.2f s = %.1f requests/s%n",
+                    label, perClient * CLIENTS, CLIENTS, seconds, requestsPerSecond);
+            return requestsPerSecond;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
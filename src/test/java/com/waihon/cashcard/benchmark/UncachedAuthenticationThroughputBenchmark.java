@@ -0,0 +1,10 @@
+package com.waihon.cashcard.benchmark;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// AuthenticationThroughputBenchmark again without the credential cache, so that every request
+// runs a full BCrypt verification.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "cashcard.security.credential-cache.enabled=false")
+class UncachedAuthenticationThroughputBenchmark extends AuthenticationThroughputBenchmark {
+}
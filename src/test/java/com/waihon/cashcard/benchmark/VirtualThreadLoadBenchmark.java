@@ -0,0 +1,29 @@
+package com.waihon.cashcard.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+// Keeps 1k to 10k requests in flight against GET /cashcards/{id} with ClosedLoopLoad and reports
+// throughput and tail latency with one virtual thread per request. PlatformThreadLoadBenchmark
+// is the same load on Tomcat's platform-thread pool.
+// Run with: ./gradlew benchmark -PjavaVersion=21 --tests '*ThreadLoadBenchmark'
+// and -Dbenchmark.concurrency=1000,10000 -Dbenchmark.duration-seconds=20 to change the load.
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadLoadBenchmark {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void throughputAndTailLatencyUnderConcurrentClients() throws Exception {
+        ClosedLoopLoad.measure("Virtual threads", port);
+    }
+}
@@ -0,0 +1,88 @@
+package com.waihon.cashcard.cache;
+
+import com.waihon.cashcard.entity.CashCard;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CashCardCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private CashCard load(CashCard cashCard) {
+        loads.incrementAndGet();
+        return cashCard;
+    }
+
+    @Test
+    void shouldOnlyLoadACardOnce() {
+        CashCardCache cache = new CashCardCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        CashCard cashCard = new CashCard(99L, 123.45, "sarah1");
+
+        assertThat(cache.get(99L, "sarah1", () -> load(cashCard))).isEqualTo(cashCard);
+        assertThat(cache.get(99L, "sarah1", () -> load(cashCard))).isEqualTo(cashCard);
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldScopeCardsByOwner() {
+        CashCardCache cache = new CashCardCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.put(new CashCard(102L, 200.00, "kumar2"));
+
+        assertThat(cache.get(102L, "sarah1", () -> load(null))).isNull();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void shouldCacheMissingCardsOnlyForTheNegativeTtl() {
+        CashCardCache cache = new CashCardCache(100, Duration.ofMinutes(1), Duration.ZERO);
+
+        assertThat(cache.get(1000L, "sarah1", () -> load(null))).isNull();
+        assertThat(cache.get(1000L, "sarah1", () -> load(null))).isNull();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldReloadACardAfterItWasInvalidated() {
+        CashCardCache cache = new CashCardCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.get(99L, "sarah1", () -> load(new CashCard(99L, 123.45, "sarah1")));
+
+        cache.invalidate(99L, "sarah1");
+
+        CashCard updated = new CashCard(99L, 19.99, "sarah1");
+        assertThat(cache.get(99L, "sarah1", () -> load(updated))).isEqualTo(updated);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldNotCacheAValueLoadedBeforeAConcurrentWrite() {
+        CashCardCache cache = new CashCardCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // The card is updated while the (now stale) value is being loaded.
+        cache.get(99L, "sarah1", () -> {
+            cache.invalidate(99L, "sarah1");
+            return load(new CashCard(99L, 123.45, "sarah1"));
+        });
+
+        CashCard updated = new CashCard(99L, 19.99, "sarah1");
+        assertThat(cache.get(99L, "sarah1", () -> load(updated))).isEqualTo(updated);
+    }
+
+    @Test
+    void shouldEvictTheLeastRecentlyUsedCardsWhenFull() {
+        CashCardCache cache = new CashCardCache(16, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        for (long id = 0; id < 1000; id++) {
+            cache.put(new CashCard(id, 1.00, "sarah1"));
+        }
+
+        assertThat(cache.stats().size()).isLessThanOrEqualTo(16);
+        assertThat(cache.stats().evictions()).isGreaterThan(0);
+    }
+}
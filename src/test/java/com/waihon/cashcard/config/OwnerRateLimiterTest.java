@@ -0,0 +1,59 @@
+package com.waihon.cashcard.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class OwnerRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Bursts of 2, one token every 100ms, and requests may wait up to 50ms for a token.
+    private final OwnerRateLimiter rateLimiter = new OwnerRateLimiter(
+            Map.of("CARD-OWNER", new OwnerRateLimiter.Rate(2, 10)),
+            Duration.ofMillis(50).toNanos(), meterRegistry, now::get);
+
+    @Test
+    void shouldAdmitABurstThenQueueOrRejectUntilTheBucketRefills() {
+        assertThat(rateLimiter.acquire("sarah1", "CARD-OWNER")).isEqualTo(new OwnerRateLimiter.Admission(true, 0));
+        assertThat(rateLimiter.acquire("sarah1", "CARD-OWNER")).isEqualTo(new OwnerRateLimiter.Admission(true, 0));
+        // The next token comes in 100ms, more than the 50ms a request may wait.
+        assertThat(rateLimiter.acquire("sarah1", "CARD-OWNER"))
+                .isEqualTo(new OwnerRateLimiter.Admission(false, Duration.ofMillis(100).toNanos()));
+
+        now.addAndGet(Duration.ofMillis(60).toNanos());
+        // 40ms to go: close enough to wait for it. That reserves the token.
+        assertThat(rateLimiter.acquire("sarah1", "CARD-OWNER"))
+                .isEqualTo(new OwnerRateLimiter.Admission(true, Duration.ofMillis(40).toNanos()));
+        assertThat(rateLimiter.acquire("sarah1", "CARD-OWNER").admitted()).isFalse();
+
+        // Kumar's bucket is his own.
+        assertThat(rateLimiter.acquire("kumar2", "CARD-OWNER").admitted()).isTrue();
+
+        assertThat(meterRegistry.get("cashcard.rate-limit.queued").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cashcard.rate-limit.rejected").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldOnlyLimitRolesThatHaveARate() {
+        assertThat(rateLimiter.limitedRole(List.of("ROLE_NON-OWNER", "ROLE_CARD-OWNER"))).isEqualTo("CARD-OWNER");
+        assertThat(rateLimiter.limitedRole(List.of("ROLE_NON-OWNER"))).isNull();
+    }
+
+    @Test
+    void shouldRefuseRatesWithoutABurstOrRefill() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new OwnerRateLimiter.Rate(0, 10));
+        assertThatIllegalArgumentException().isThrownBy(() -> new OwnerRateLimiter.Rate(2, 0));
+        assertThatIllegalArgumentException().isThrownBy(() -> new OwnerRateLimiter.Rate(2, -1));
+        assertThatIllegalArgumentException().isThrownBy(() -> new OwnerRateLimiter.Rate(2, Double.NaN));
+        assertThatIllegalArgumentException().isThrownBy(() -> new OwnerRateLimiter.Rate(2, 1e-12));
+    }
+}
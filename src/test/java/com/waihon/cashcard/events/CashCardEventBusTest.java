@@ -0,0 +1,173 @@
+package com.waihon.cashcard.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CashCardEventBusTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Three events of history and room for two unsent events per subscriber.
+    private final CashCardEventBus eventBus = new CashCardEventBus(3, 2, Duration.ofMinutes(5), Duration.ofMinutes(5),
+            2, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        eventBus.shutdown();
+    }
+
+    @Test
+    void shouldOnlyDeliverTheOwnersEvents() throws InterruptedException {
+        RecordingSink sarah = new RecordingSink();
+        eventBus.subscribe("sarah1", null, sarah);
+        eventBus.publish("kumar2", CashCardEvent.CREATED, 102L, 200.00, 0);
+        eventBus.publish("sarah1", CashCardEvent.CREATED, 99L, 123.45, 0);
+
+        CashCardEvent event = sarah.next();
+        assertThat(event.type()).isEqualTo(CashCardEvent.CREATED);
+        assertThat(event.id()).isEqualTo(99);
+        assertThat(event.amount()).isEqualTo(123.45);
+        assertThat(eventBus.isWatched("sarah1")).isTrue();
+        assertThat(eventBus.isWatched("kumar2")).isFalse();
+    }
+
+    @Test
+    void shouldReplayTheEventsAfterTheLastEventId() throws InterruptedException {
+        RecordingSink first = new RecordingSink();
+        Runnable unsubscribe = eventBus.subscribe("sarah1", null, first);
+        eventBus.publish("sarah1", CashCardEvent.CREATED, 99L, 1.00, 0);
+        String lastEventId = first.next().eventId();
+        unsubscribe.run();
+        eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, 2.00, 1);
+        eventBus.publishDeleted("sarah1", 99L);
+
+        RecordingSink second = new RecordingSink();
+        eventBus.subscribe("sarah1", lastEventId, second);
+        assertThat(second.next().type()).isEqualTo(CashCardEvent.UPDATED);
+        assertThat(second.next().type()).isEqualTo(CashCardEvent.DELETED);
+        assertThat(second.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void shouldResetWhenEventsCanNoLongerBeReplayed() throws InterruptedException {
+        RecordingSink first = new RecordingSink();
+        Runnable unsubscribe = eventBus.subscribe("sarah1", null, first);
+        eventBus.publish("sarah1", CashCardEvent.CREATED, 99L, 1.00, 0);
+        String lastEventId = first.next().eventId();
+        unsubscribe.run();
+        // Four more events push the one after lastEventId out of the history of three.
+        for (int i = 0; i < 4; i++) {
+            eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, 2.00 + i, i + 1);
+        }
+
+        RecordingSink second = new RecordingSink();
+        eventBus.subscribe("sarah1", lastEventId, second);
+        assertThat(second.next().type()).isEqualTo(CashCardEvent.RESET);
+
+        // So does an id from before a restart.
+        RecordingSink third = new RecordingSink();
+        eventBus.subscribe("sarah1", "0-1", third);
+        assertThat(third.next().type()).isEqualTo(CashCardEvent.RESET);
+    }
+
+    @Test
+    void shouldDropAChangePublishedAfterALaterOne() throws InterruptedException {
+        RecordingSink sarah = new RecordingSink();
+        eventBus.subscribe("sarah1", null, sarah);
+        eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, 2.00, 2);
+        // Committed before the one above, but its request got round to publishing later.
+        eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, 1.00, 1);
+        eventBus.publishDeleted("sarah1", 99L);
+        eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, 3.00, 3);
+
+        assertThat(sarah.next().amount()).isEqualTo(2.00);
+        assertThat(sarah.next().type()).isEqualTo(CashCardEvent.DELETED);
+        assertThat(sarah.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void shouldDisconnectASubscriberThatFallsBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink() {
+            @Override
+            public void send(CashCardEvent event) throws IOException {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(event);
+            }
+
+            // Like SseEmitter.complete(), ending the stream waits for the send in progress.
+            @Override
+            public void close() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.close();
+            }
+        };
+        eventBus.subscribe("sarah1", null, slow);
+        // One event is being sent, two wait in the buffer, and the fourth doesn't fit. Publishing
+        // doesn't wait for the subscriber at any point, not even to disconnect it.
+        for (int i = 0; i < 4; i++) {
+            eventBus.publish("sarah1", CashCardEvent.UPDATED, 99L, (double) i, i);
+            if (i == 0) {
+                assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        assertThat(meterRegistry.get("cashcard.events.disconnected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cashcard.events.subscribers").gauge().value()).isZero();
+        release.countDown();
+        assertThat(slow.closed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The client can reconnect and pick up where it left off.
+        RecordingSink resumed = new RecordingSink();
+        eventBus.subscribe("sarah1", slow.next().eventId(), resumed);
+        for (int i = 1; i < 4; i++) {
+            assertThat(resumed.next().amount()).isEqualTo(i);
+        }
+    }
+
+    private static class RecordingSink implements CashCardEventSink {
+
+        final BlockingQueue<CashCardEvent> events = new LinkedBlockingQueue<>();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(CashCardEvent event) throws IOException {
+            events.add(event);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        CashCardEvent next() throws InterruptedException {
+            CashCardEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            return event;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.waihon.cashcard.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OwnerShardRingTest {
+
+    private static final int OWNERS = 100_000;
+
+    @Test
+    void shouldSpreadOwnersEvenlyOverTheShards() {
+        OwnerShardRing ring = new OwnerShardRing(4);
+        int[] owners = new int[4];
+        for (int i = 0; i < OWNERS; i++) {
+            owners[ring.shardOf("owner-" + i)]++;
+        }
+        for (int count : owners) {
+            assertThat(count).isBetween(OWNERS / 4 * 8 / 10, OWNERS / 4 * 12 / 10);
+        }
+    }
+
+    @Test
+    void shouldOnlyMoveOwnersToTheNewShardWhenAShardIsAdded() {
+        OwnerShardRing before = new OwnerShardRing(3);
+        OwnerShardRing after = new OwnerShardRing(4);
+        int moved = 0;
+        for (int i = 0; i < OWNERS; i++) {
+            String owner = "owner-" + i;
+            if (before.shardOf(owner) != after.shardOf(owner)) {
+                assertThat(after.shardOf(owner)).isEqualTo(3);
+                moved++;
+            }
+        }
+        // About a quarter, where hash % n would move three quarters.
+        assertThat(moved).isBetween(OWNERS / 4 * 8 / 10, OWNERS / 4 * 12 / 10);
+    }
+}
@@ -0,0 +1,201 @@
+package com.waihon.cashcard.storage;
+
+import com.waihon.cashcard.entity.CashCard;
+import com.waihon.cashcard.entity.CashCardSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CashCardLogRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private CashCardLogRepository repository;
+    private final List<String> ledger = new ArrayList<>();
+
+    private CashCardLogRepository open(long compactionThreshold) {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new CashCardLogRepository(new CashCardLog(directory.resolve("cashcards.log"), false),
+                compactionThreshold, 2, (cardId, owner, type, oldAmount, newAmount, version) ->
+                ledger.add(cardId + " " + type + " " + oldAmount + " -> " + newAmount + " @" + version), () -> {
+        });
+        return repository;
+    }
+
+    @AfterEach
+    void close() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    void shouldFindTheCardsAgainAfterReopening() {
+        open(Long.MAX_VALUE);
+        CashCard first = repository.save(new CashCard(null, 123.45, "sarah1"));
+        CashCard second = repository.save(new CashCard(null, 1.00, "sarah1"));
+        repository.adjustAmountByIdAndOwner(first.id(), "sarah1", 10.00);
+        repository.deleteByIdAndOwner(second.id(), "sarah1");
+
+        open(Long.MAX_VALUE);
+
+        assertThat(repository.findByIdAndOwner(first.id(), "sarah1"))
+                .isEqualTo(new CashCard(first.id(), 133.45, "sarah1", 1L));
+        assertThat(repository.findById(second.id())).isEmpty();
+        assertThat(repository.findSummaryByOwner("sarah1"))
+                .isEqualTo(new CashCardSummary("sarah1", 1, 133.45, 133.45, 133.45));
+    }
+
+    @Test
+    void shouldIgnoreARecordTornByACrash() throws IOException {
+        open(Long.MAX_VALUE);
+        CashCard saved = repository.save(new CashCard(null, 123.45, "sarah1"));
+        repository.close();
+        repository = null;
+
+        // What a crash in the middle of an append leaves behind: a length, but not the record it
+        // promises.
+        Path file = directory.resolve("cashcards.log");
+        long end;
+        try (CashCardLog log = new CashCardLog(file, false)) {
+            log.recover((offset, record) -> {
+            });
+            end = log.size();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(49).putLong(0x7FL).flip(), end);
+        }
+
+        open(Long.MAX_VALUE);
+        assertThat(repository.count()).isEqualTo(1);
+        CashCard next = repository.save(new CashCard(null, 1.00, "sarah1"));
+
+        open(Long.MAX_VALUE);
+        assertThat(repository.findAllById(List.of(saved.id(), next.id()))).hasSize(2);
+    }
+
+    @Test
+    void shouldCompactTheLogWithoutLosingCardsOrReusingIds() throws IOException {
+        open(4096);
+        CashCard kept = repository.save(new CashCard(null, 0.00, "sarah1"));
+        CashCard deleted = repository.save(new CashCard(null, 1.00, "kumar2"));
+        repository.deleteById(deleted.id());
+        long changeCount = repository.findChangeCountByOwner("sarah1");
+        // Enough records to outgrow the initial 1 MB mapping many times over without compaction.
+        for (int i = 0; i < 30_000; i++) {
+            repository.adjustAmountByIdAndOwner(kept.id(), "sarah1", 1.00);
+            long next = repository.findChangeCountByOwner("sarah1");
+            assertThat(next).isGreaterThan(changeCount);
+            changeCount = next;
+        }
+        assertThat(Files.size(directory.resolve("cashcards.log"))).isEqualTo(1 << 20);
+
+        open(4096);
+        assertThat(repository.findByIdAndOwner(kept.id(), "sarah1").amount()).isEqualTo(30_000.00);
+        assertThat(repository.findChangeCountByOwner("sarah1")).isGreaterThanOrEqualTo(changeCount);
+        // kumar2's card was compacted away along with its DELETE record.
+        assertThat(repository.findChangeCountByOwner("kumar2")).isGreaterThan(0);
+        assertThat(repository.save(new CashCard(null, 5.00, "kumar2")).id()).isGreaterThan(deleted.id());
+    }
+
+    @Test
+    void shouldRefuseStaleVersionsAndDuplicateIds() {
+        open(Long.MAX_VALUE);
+        CashCard saved = repository.save(new CashCard(null, 123.45, "sarah1"));
+        CashCard updated = repository.save(new CashCard(saved.id(), 19.99, "sarah1", saved.version()));
+        assertThat(updated.version()).isEqualTo(1L);
+
+        assertThatThrownBy(() -> repository.save(new CashCard(saved.id(), 5.00, "sarah1", saved.version())))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> repository.save(new CashCard(saved.id(), 5.00, "sarah1")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(repository.findById(saved.id())).contains(updated);
+    }
+
+    @Test
+    void shouldStreamAnOwnersCardsInAmountOrderAcrossChunks() {
+        open(Long.MAX_VALUE);
+        repository.saveAll(List.of(
+                new CashCard(null, 150.00, "sarah1"),
+                new CashCard(null, 1.00, "sarah1"),
+                new CashCard(null, 200.00, "kumar2"),
+                new CashCard(null, 123.45, "sarah1"),
+                new CashCard(null, 1.00, "sarah1")));
+
+        List<Double> amounts = new ArrayList<>();
+        repository.streamByOwner("sarah1", cashCard -> amounts.add(cashCard.amount()));
+
+        assertThat(amounts).containsExactly(1.00, 1.00, 123.45, 150.00);
+    }
+
+    @Test
+    void shouldPageAnOwnersCardsByOffsetInAndOutOfAmountOrder() {
+        open(Long.MAX_VALUE);
+        repository.saveAll(List.of(
+                new CashCard(null, 150.00, "sarah1"),
+                new CashCard(null, 1.00, "sarah1"),
+                new CashCard(null, 200.00, "kumar2"),
+                new CashCard(null, 123.45, "sarah1"),
+                new CashCard(null, 1.00, "sarah1")));
+
+        Page<CashCard> page = repository.findByOwner("sarah1", PageRequest.of(1, 2, Sort.by("amount")));
+        assertThat(page.getContent()).extracting(CashCard::amount).containsExactly(123.45, 150.00);
+        assertThat(page.getTotalElements()).isEqualTo(4);
+
+        page = repository.findByOwnerAndAmountBetween("sarah1", 1.00, 123.45, PageRequest.of(0, 2, Sort.by("amount")));
+        assertThat(page.getContent()).extracting(CashCard::amount).containsExactly(1.00, 1.00);
+        assertThat(page.getTotalElements()).isEqualTo(3);
+
+        page = repository.findByOwner("sarah1", PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "amount")));
+        assertThat(page.getContent()).extracting(CashCard::amount).containsExactly(150.00, 123.45, 1.00);
+    }
+
+    @Test
+    void shouldKeepCountingChangesOfAnOwnerWhoseLastCardIsDeleted() {
+        open(Long.MAX_VALUE);
+        CashCard saved = repository.save(new CashCard(null, 1.00, "kumar2"));
+        long changeCount = repository.findChangeCountByOwner("kumar2");
+
+        repository.deleteByIdAndOwner(saved.id(), "kumar2");
+
+        assertThat(repository.findChangeCountByOwner("kumar2")).isGreaterThan(changeCount);
+        assertThat(repository.findSummaryByOwner("kumar2")).isEqualTo(CashCardSummary.empty("kumar2"));
+        assertThat(repository.findByOwner("kumar2", PageRequest.of(0, 20)).getContent()).isEmpty();
+    }
+
+    @Test
+    void shouldHandEveryBalanceChangeToTheLedger() {
+        open(Long.MAX_VALUE);
+        repository.importIfEmpty(List.of(new CashCard(99L, 123.45, "sarah1", 0L)));
+        CashCard saved = repository.save(new CashCard(null, 10.00, "sarah1"));
+        repository.adjustAmountByIdAndOwner(saved.id(), "sarah1", 5.00);
+        // Same amount again: not a balance change.
+        repository.updateAmountByIdAndOwner(saved.id(), "sarah1", 15.00);
+        repository.deleteByIdAndOwner(saved.id(), "sarah1");
+
+        assertThat(ledger).containsExactly(
+                saved.id() + " created null -> 10.0 @0",
+                saved.id() + " updated 10.0 -> 15.0 @1",
+                saved.id() + " deleted 15.0 -> null @2");
+    }
+}
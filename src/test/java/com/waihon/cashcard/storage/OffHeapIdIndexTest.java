@@ -0,0 +1,39 @@
+package com.waihon.cashcard.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapIdIndexTest {
+
+    @Test
+    void shouldAgreeWithAHashMapThroughPutsRemovesAndResizes() {
+        OffHeapIdIndex index = new OffHeapIdIndex(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Few distinct ids, so that clusters form and removals have entries to shift back.
+            long id = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                long offset = 24 + i;
+                index.put(id, offset);
+                expected.put(id, offset);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (long id = 0; id < 5_000; id++) {
+            assertThat(index.get(id)).isEqualTo(expected.getOrDefault(id, -1L));
+        }
+        Map<Long, Long> visited = new HashMap<>();
+        index.forEach(visited::put);
+        assertThat(visited).isEqualTo(expected);
+    }
+}